@@ -0,0 +1,63 @@
+package cn.allbs.influx;
+
+import cn.allbs.influx.recovery.DeadLetterHandler;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.AutowireCandidateQualifier;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotationMetadata;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 功能: 按 influx.connections 注册命名连接
+ * <p>
+ * 每个连接注册为名为 连接名InfluxTemplate 的bean，并带有 @Qualifier("连接名")。
+ * 注册发生在 {@link InfluxDbConfiguration} 的 @Bean 方法之后，因此不影响默认连接的 @ConditionalOnMissingBean 判断。
+ *
+ * @author ChenQi
+ */
+public class InfluxConnectionsRegistrar implements ImportBeanDefinitionRegistrar, EnvironmentAware, BeanFactoryAware {
+
+    private static final String CONNECTIONS_PREFIX = "influx.connections";
+
+    private Environment environment;
+
+    private BeanFactory beanFactory;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+        Map<String, InfluxDbProperties> connections = Binder.get(environment)
+                .bind(CONNECTIONS_PREFIX, Bindable.mapOf(String.class, InfluxDbProperties.class))
+                .orElse(Collections.emptyMap());
+        connections.forEach((name, properties) -> {
+            properties.setName(name);
+            GenericBeanDefinition definition = new GenericBeanDefinition();
+            definition.setBeanClass(InfluxTemplate.class);
+            definition.setInstanceSupplier(() -> InfluxDbConfiguration.createInfluxTemplate(properties, beanFactory.getBeanProvider(DeadLetterHandler.class)));
+            definition.addQualifier(new AutowireCandidateQualifier(Qualifier.class, name));
+            definition.setDestroyMethodName(AbstractBeanDefinition.INFER_METHOD);
+            registry.registerBeanDefinition(name + "InfluxTemplate", definition);
+        });
+    }
+}
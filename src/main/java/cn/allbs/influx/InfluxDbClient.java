@@ -1,6 +1,32 @@
 package cn.allbs.influx;
 
+import cn.allbs.influx.cardinality.CardinalityGuard;
+import cn.allbs.influx.cardinality.CardinalityMetrics;
 import cn.allbs.influx.exception.InfluxdbException;
+import cn.allbs.influx.latest.LatestValueStore;
+import cn.allbs.influx.page.KeysetCursor;
+import cn.allbs.influx.page.KeysetQuery;
+import cn.allbs.influx.page.QueryPage;
+import cn.allbs.influx.recovery.DeadLetterHandler;
+import cn.allbs.influx.recovery.RecoveryMetrics;
+import cn.allbs.influx.recovery.WriteRecoveryStrategy;
+import cn.allbs.influx.replica.HedgeMetrics;
+import cn.allbs.influx.replica.HedgedReader;
+import cn.allbs.influx.rollup.RollupQueryRouter;
+import cn.allbs.influx.transfer.LineProtocolExporter;
+import cn.allbs.influx.transfer.LineProtocolImporter;
+import cn.allbs.influx.transfer.TransferProgress;
+import cn.allbs.influx.transfer.TransferResult;
+import cn.allbs.influx.util.InfluxQl;
+import cn.allbs.influx.util.LineProtocol;
+import cn.allbs.influx.util.NamedThreadFactory;
+import cn.allbs.influx.write.BatchShaper;
+import cn.allbs.influx.write.ColumnarPoints;
+import cn.allbs.influx.write.EncodedBatch;
+import cn.allbs.influx.write.PriorityWriter;
+import cn.allbs.influx.write.RateLimitMetrics;
+import cn.allbs.influx.write.WritePriority;
+import cn.allbs.influx.write.WriteRateLimiter;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.influxdb.BatchOptions;
@@ -10,10 +36,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Resource;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -30,6 +61,11 @@ public abstract class InfluxDbClient implements InfluxTemplate {
 
     private static final Logger log = LoggerFactory.getLogger(InfluxDbClient.class);
 
+    private static final int EXPORT_CHUNK_SIZE = 10000;
+    private static final int IMPORT_BATCH_BYTES = 1024 * 1024;
+    private static final int IMPORT_CONCURRENCY = 4;
+    private static final int COLUMNAR_BATCH_BYTES = 1024 * 1024;
+
     protected String database;
     protected String retentionPolicy;
     protected String retentionPolicyTime;
@@ -38,6 +74,43 @@ public abstract class InfluxDbClient implements InfluxTemplate {
 
     protected InfluxDbProperties influxDbProperties;
 
+    protected WriteRecoveryStrategy recoveryStrategy;
+
+    protected RollupQueryRouter rollupQueryRouter;
+
+    protected BatchShaper batchShaper = new BatchShaper();
+
+    protected LatestValueStore latestValueStore;
+
+    /**
+     * 开启分优先级写入时在首次按优先级写入时创建，未使用时不启动写入线程
+     */
+    protected volatile PriorityWriter priorityWriter;
+
+    protected WriteRateLimiter rateLimiter;
+
+    protected CardinalityGuard cardinalityGuard;
+
+    /**
+     * 配置了副本时由子类在连接后创建
+     */
+    protected HedgedReader hedgedReader;
+
+    /**
+     * 异步初始化完成前缓存的写入
+     */
+    private final Deque<EncodedBatch> pendingWrites = new ArrayDeque<>();
+
+    private volatile boolean ready = true;
+
+    private volatile boolean bootstrapping = false;
+
+    private volatile String bootstrapError;
+
+    private ScheduledExecutorService bootstrapExecutor;
+
+    private volatile boolean closed = false;
+
     @Resource
     private ObjectMapper mapper;
 
@@ -47,6 +120,23 @@ public abstract class InfluxDbClient implements InfluxTemplate {
         this.retentionPolicy = Optional.ofNullable(influxDbProperties.getRetentionPolicy()).orElse("autogen");
         this.retentionPolicyTime = Optional.ofNullable(influxDbProperties.getRetentionPolicyTime()).orElse("0");
         this.influxDbProperties = influxDbProperties;
+        this.recoveryStrategy = new WriteRecoveryStrategy(influxDbProperties.getRecovery(), null);
+        this.rollupQueryRouter = new RollupQueryRouter(database, retentionPolicy, influxDbProperties.getRollups(), this::tagKeys);
+        this.rateLimiter = new WriteRateLimiter(influxDbProperties.getRateLimit());
+        this.cardinalityGuard = new CardinalityGuard(influxDbProperties.getCardinality());
+        InfluxDbProperties.Latest latest = influxDbProperties.getLatest();
+        if (latest.isEnabled()) {
+            this.latestValueStore = new LatestValueStore(latest.getPointsPerSeries(), latest.getMaxMemoryBytes());
+        }
+    }
+
+    /**
+     * 设置死信处理器，接收失败恢复时被服务端拒绝的数据点
+     *
+     * @param deadLetterHandler 死信处理器
+     */
+    public void setDeadLetterHandler(DeadLetterHandler deadLetterHandler) {
+        this.recoveryStrategy.setDeadLetterHandler(deadLetterHandler);
     }
 
     @Override
@@ -54,6 +144,161 @@ public abstract class InfluxDbClient implements InfluxTemplate {
         return influxdb;
     }
 
+    /**
+     * 连接只读副本并创建 {@link #hedgedReader}，主库连接及初始化完成后调用，未配置副本时不做处理
+     */
+    protected void connectReplicas() {
+    }
+
+    /**
+     * 同步初始化: 连接、建库、创建保留策略及降采样层，配置了副本时连接副本
+     */
+    public void bootstrap() {
+        reConnect();
+        if (influxdb == null) {
+            throw new InfluxdbException("InfluxDB connection is not available");
+        }
+        createRetentionPolicy();
+        createRollups();
+        if (hedgedReader == null) {
+            connectReplicas();
+        }
+    }
+
+    /**
+     * 异步初始化: 立即返回，后台按指数退避重试直至初始化成功，期间的写入缓存至初始化完成后写入，查询抛出异常
+     */
+    public synchronized void bootstrapAsync() {
+        if (bootstrapExecutor != null) {
+            return;
+        }
+        ready = false;
+        bootstrapping = true;
+        bootstrapExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("allbs-influx-" + influxDbProperties.getName() + "-init"));
+        bootstrapExecutor.execute(() -> tryBootstrap(influxDbProperties.getInit().getRetryInterval()));
+    }
+
+    private void tryBootstrap(long retryInterval) {
+        try {
+            if (influxdb == null) {
+                this.influxdb = buildInfluxDb();
+            }
+            if (influxdb == null) {
+                throw new InfluxdbException("InfluxDB connection is not available");
+            }
+            createDatabase(database);
+            createRetentionPolicy();
+            createRollups();
+            if (hedgedReader == null) {
+                connectReplicas();
+            }
+            // 逐批取出后在锁外写入，写入及失败重试期间新的写入继续缓存并按顺序写入，不会阻塞调用方
+            int drained = 0;
+            for (; ; ) {
+                EncodedBatch batch;
+                synchronized (pendingWrites) {
+                    batch = pendingWrites.poll();
+                    if (batch == null) {
+                        ready = true;
+                        bootstrapping = false;
+                        bootstrapError = null;
+                        break;
+                    }
+                }
+                drained++;
+                try {
+                    doWriteBatch(batch);
+                } catch (Exception e) {
+                    log.error("allbs-influx warning! InfluxDB pending batch [{}] insertion failed, points are dead-lettered due to: {}", batch, e.getLocalizedMessage());
+                    deadLetter(batch, e.getLocalizedMessage());
+                }
+            }
+            log.info("allbs-influx notice: InfluxDB bootstrap finished, {} pending batches written.", drained);
+            bootstrapExecutor.shutdown();
+        } catch (Exception e) {
+            bootstrapError = e.getLocalizedMessage();
+            log.warn("allbs-influx warning! InfluxDB bootstrap failed, retry in {} ms due to: {}", retryInterval, e.getLocalizedMessage());
+            if (closed) {
+                return;
+            }
+            long next = Math.min(retryInterval * 2, influxDbProperties.getInit().getMaxRetryInterval());
+            try {
+                bootstrapExecutor.schedule(() -> tryBootstrap(next), retryInterval, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException rejected) {
+                log.debug("allbs-influx notice: InfluxDB bootstrap retry cancelled, client is closed.");
+            }
+        }
+    }
+
+    /**
+     * 初始化完成后补写失败的缓存批次交由死信处理器，不再重试
+     */
+    private void deadLetter(EncodedBatch batch, String errorMessage) {
+        try {
+            recoveryStrategy.deadLetter(batch, errorMessage);
+        } catch (Exception e) {
+            log.error("allbs-influx warning! InfluxDB dead letter handler failed due to: {}", e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * 是否已完成初始化，同步初始化时始终为true
+     *
+     * @return 是否就绪
+     */
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 最近一次异步初始化失败的原因
+     *
+     * @return 失败原因，无失败时返回null
+     */
+    public String getBootstrapError() {
+        return bootstrapError;
+    }
+
+    /**
+     * 初始化完成前缓存的写入批次数
+     *
+     * @return 批次数
+     */
+    public int getPendingWrites() {
+        synchronized (pendingWrites) {
+            return pendingWrites.size();
+        }
+    }
+
+    private void ensureReady() {
+        if (!ready) {
+            throw new InfluxdbException("InfluxDB is not ready yet" + (bootstrapError == null ? "" : " due to: " + bootstrapError));
+        }
+    }
+
+    /**
+     * 未就绪时缓存写入
+     *
+     * @param batch 已编码的批量数据
+     * @return 是否已缓存
+     */
+    private boolean bufferIfNotReady(EncodedBatch batch) {
+        if (ready) {
+            return false;
+        }
+        synchronized (pendingWrites) {
+            if (ready) {
+                return false;
+            }
+            if (pendingWrites.size() >= influxDbProperties.getInit().getBufferLimit()) {
+                throw new InfluxdbException("InfluxDB is not ready yet and the pending write buffer is full");
+            }
+            pendingWrites.add(batch);
+            return true;
+        }
+    }
+
     /**
      * 设置数据保存策略: retentionPolicy策略名 / database 数据库名 / DURATION 数据保存时限 / REPLICATION副本个数 / 结尾 DEFAULT
      * DEFAULT表示设为默认的策略
@@ -78,6 +323,31 @@ public abstract class InfluxDbClient implements InfluxTemplate {
         executeQuery(command);
     }
 
+    /**
+     * 按配置创建降采样层的保留策略及连续查询，已存在时按配置更新
+     */
+    @Override
+    public void createRollups() {
+        for (InfluxDbProperties.Rollup rollup : influxDbProperties.getRollups()) {
+            try {
+                createRetentionPolicy(rollup.getName(), rollup.getDuration(), rollup.getReplication(), false);
+            } catch (InfluxdbException e) {
+                executeQuery(String.format("ALTER RETENTION POLICY \"%s\" ON \"%s\" DURATION %s REPLICATION %d",
+                        rollup.getName(), database, rollup.getDuration(), rollup.getReplication()));
+            }
+            String cqName = "cq_" + rollup.getName();
+            String cq = String.format("CREATE CONTINUOUS QUERY \"%s\" ON \"%s\" BEGIN SELECT %s(*) INTO \"%s\".\"%s\".:MEASUREMENT FROM \"%s\".\"%s\"./^(?:%s)$/ GROUP BY time(%s), * END",
+                    cqName, database, rollup.getAggregation(), database, rollup.getName(), database, retentionPolicy, rollup.getMeasurements(), rollup.getInterval());
+            try {
+                executeQuery(cq);
+            } catch (InfluxdbException e) {
+                executeQuery(String.format("DROP CONTINUOUS QUERY \"%s\" ON \"%s\"", cqName, database));
+                executeQuery(cq);
+            }
+            log.debug("allbs-influx notice: rollup tier [{}] is ready.", rollup);
+        }
+    }
+
     /**
      * 创建数据库
      *
@@ -97,6 +367,7 @@ public abstract class InfluxDbClient implements InfluxTemplate {
     @Override
     public QueryResult query(String command) {
         reConnect();
+        ensureReady();
         return executeQuery(command);
     }
 
@@ -107,7 +378,13 @@ public abstract class InfluxDbClient implements InfluxTemplate {
      * @return 查询结果
      */
     private QueryResult executeQuery(String command) {
+        if (influxDbProperties.isRollupRouting()) {
+            command = rollupQueryRouter.route(command);
+        }
         try {
+            if (hedgedReader != null && HedgedReader.isReadOnly(command)) {
+                return hedgedReader.query(new Query(command, database));
+            }
             return influxdb.query(new Query(command, database));
         } catch (Exception e) {
             log.error("allbs-influx warning！ InfluxDB operation execution failed due to: {}", e.getLocalizedMessage());
@@ -115,6 +392,37 @@ public abstract class InfluxDbClient implements InfluxTemplate {
         }
     }
 
+    /**
+     * 查询measurement的tag key，供降采样路由判断WHERE条件，失败时返回null
+     *
+     * @param measurement measurement
+     * @return tag key
+     */
+    private Set<String> tagKeys(String measurement) {
+        try {
+            QueryResult queryResult = influxdb.query(new Query("SHOW TAG KEYS FROM " + InfluxQl.identifier(retentionPolicy)
+                    + "." + InfluxQl.identifier(measurement), database));
+            Set<String> keys = new HashSet<>();
+            for (QueryResult.Result result : queryResult.getResults()) {
+                if (result.hasError()) {
+                    return null;
+                }
+                if (result.getSeries() == null) {
+                    continue;
+                }
+                for (QueryResult.Series series : result.getSeries()) {
+                    if (series.getValues() != null) {
+                        series.getValues().forEach(values -> keys.add(String.valueOf(values.get(0))));
+                    }
+                }
+            }
+            return keys;
+        } catch (Exception e) {
+            log.warn("allbs-influx warning！ failed to load tag keys of [{}] due to: {}", measurement, e.getLocalizedMessage());
+            return null;
+        }
+    }
+
     /**
      * 读取相关数据并转为list 默认时间格式化为yyyy-MM-dd HH:mm:ss
      *
@@ -135,6 +443,7 @@ public abstract class InfluxDbClient implements InfluxTemplate {
      */
     @Override
     public List<Map<String, Object>> queryMapList(String command, String dateTimeFormatter) {
+        ensureReady();
         List<Map<String, Object>> resultList = new LinkedList<>();
         QueryResult queryResult = executeQuery(command);
         QueryResult.Result result = queryResult.getResults().get(0);
@@ -142,24 +451,93 @@ public abstract class InfluxDbClient implements InfluxTemplate {
             QueryResult.Series series = result.getSeries().get(0);
             if (series.getColumns() != null && series.getValues() != null) {
                 List<String> columns = series.getColumns();
-                series.getValues().forEach(values -> {
-                    Map<String, Object> dataMap = new HashMap<>();
-                    for (int i = 0; i < columns.size(); i++) {
-                        String key = columns.get(i);
-                        Object value = values.get(i);
-                        if ("time".equals(key)) {
-                            value = LocalDateTime.parse(value.toString(), DateTimeFormatter.ISO_DATE_TIME)
-                                    .format(DateTimeFormatter.ofPattern(dateTimeFormatter));
-                        }
-                        dataMap.put(key, value);
-                    }
-                    resultList.add(dataMap);
-                });
+                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(dateTimeFormatter);
+                series.getValues().forEach(values -> resultList.add(toMap(columns, values, formatter)));
             }
         }
         return resultList;
     }
 
+    /**
+     * 按时间游标分页查询 默认时间格式化为yyyy-MM-dd HH:mm:ss
+     *
+     * @param command  sql语句，不含LIMIT/OFFSET
+     * @param pageSize 每页行数
+     * @param cursor   上一页返回的游标，第一页为null
+     * @return 分页结果
+     */
+    @Override
+    public QueryPage queryPage(String command, int pageSize, String cursor) {
+        return queryPage(command, pageSize, cursor, "yyyy-MM-dd HH:mm:ss");
+    }
+
+    /**
+     * 按时间游标分页查询，每页在where中追加上一页最后的时间戳，查询耗时不随页码增加
+     *
+     * @param command           sql语句，不含LIMIT/OFFSET
+     * @param pageSize          每页行数
+     * @param cursor            上一页返回的游标，第一页为null
+     * @param dateTimeFormatter 时间格式化
+     * @return 分页结果
+     */
+    @Override
+    public QueryPage queryPage(String command, int pageSize, String cursor, String dateTimeFormatter) {
+        ensureReady();
+        if (pageSize <= 0) {
+            throw new InfluxdbException("InfluxDB page size must be positive");
+        }
+        KeysetQuery query = KeysetQuery.parse(command);
+        KeysetCursor position = cursor == null ? null : query.cursor(cursor);
+        int skip = position == null ? 0 : position.getSkip();
+        QueryResult.Result result = executeQuery(query.page(position, pageSize + skip + 1)).getResults().get(0);
+        if (result.hasError()) {
+            throw new InfluxdbException("InfluxDB operation execution failed due to: " + result.getError());
+        }
+        if (result.getSeries() == null || result.getSeries().get(0).getValues() == null) {
+            return new QueryPage(Collections.emptyList(), null);
+        }
+        QueryResult.Series series = result.getSeries().get(0);
+        List<String> columns = series.getColumns();
+        List<List<Object>> values = series.getValues();
+        int timeIndex = columns.indexOf("time");
+        int start = 0;
+        while (position != null && start < skip && start < values.size() && toNanos(values.get(start).get(timeIndex)) == position.getTime()) {
+            start++;
+        }
+        int end = Math.min(values.size(), start + pageSize);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(dateTimeFormatter);
+        List<Map<String, Object>> rows = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            rows.add(toMap(columns, values.get(i), formatter));
+        }
+        String next = null;
+        if (end < values.size() && end > start) {
+            long last = toNanos(values.get(end - 1).get(timeIndex));
+            int ties = 0;
+            for (int i = end - 1; i >= start && toNanos(values.get(i).get(timeIndex)) == last; i--) {
+                ties++;
+            }
+            if (position != null && last == position.getTime()) {
+                ties += start;
+            }
+            next = query.nextCursor(last, ties);
+        }
+        return new QueryPage(rows, next);
+    }
+
+    private static Map<String, Object> toMap(List<String> columns, List<Object> values, DateTimeFormatter formatter) {
+        Map<String, Object> dataMap = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            String key = columns.get(i);
+            Object value = values.get(i);
+            if ("time".equals(key)) {
+                value = toDateTime(value).format(formatter);
+            }
+            dataMap.put(key, normalize(value));
+        }
+        return dataMap;
+    }
+
     /**
      * 读取相关数据并转为指定类型的list
      *
@@ -170,6 +548,7 @@ public abstract class InfluxDbClient implements InfluxTemplate {
      */
     @Override
     public <T> List<T> queryBeanList(String command, Class<T> targetType) {
+        ensureReady();
         List<T> resultList = new LinkedList<>();
         QueryResult queryResult = executeQuery(command);
         QueryResult.Result result = queryResult.getResults().get(0);
@@ -180,7 +559,11 @@ public abstract class InfluxDbClient implements InfluxTemplate {
                 resultList = series.getValues().stream().map(values -> {
                     Map<String, Object> dataMap = new HashMap<>();
                     for (int i = 0; i < columns.size(); i++) {
-                        dataMap.put(columns.get(i), values.get(i));
+                        Object value = values.get(i);
+                        if ("time".equals(columns.get(i)) && value instanceof Number) {
+                            value = toDateTime(value).toInstant(ZoneOffset.UTC).toString();
+                        }
+                        dataMap.put(columns.get(i), normalize(value));
                     }
                     try {
                         return mapper.readValue(mapper.writeValueAsString(dataMap), targetType);
@@ -231,13 +614,34 @@ public abstract class InfluxDbClient implements InfluxTemplate {
     @Override
     public void insert(String measurement, Map<String, String> tags, Map<String, Object> fields, long time, TimeUnit timeUnit, ZoneOffset zoneOffset) {
         reConnect();
-        if (time == 0) {
-            time = LocalDateTime.now().toInstant(zoneOffset).toEpochMilli();
-            timeUnit = TimeUnit.MILLISECONDS;
+        Point point = point(measurement, tags, fields, time, timeUnit, zoneOffset);
+        EncodedBatch single = EncodedBatch.encode(BatchPoints.database(database).retentionPolicy(retentionPolicy).point(point).build());
+        boolean tagsDropped = false;
+        if (influxDbProperties.getCardinality().isEnabled()) {
+            single = cardinalityGuard.check(single);
+            if (single == null) {
+                return;
+            }
+            if (single.getEntries().get(0).getPoint() != point) {
+                point = single.getEntries().get(0).getPoint();
+                tagsDropped = true;
+            }
+        }
+        if (influxDbProperties.getRateLimit().isEnabled() && rateLimiter.acquire(single, database) == null) {
+            return;
+        }
+        if (bufferIfNotReady(single)) {
+            log.debug("allbs-influx notice: InfluxDB is not ready yet, data [{}] is buffered.", point);
+            return;
         }
-        Point point = Point.measurement(measurement).time(time, timeUnit).tag(tags).fields(fields).build();
         try {
-            influxdb.write(database, retentionPolicy, point);
+            single.write(influxdb);
+            if (latestValueStore != null && tagsDropped) {
+                latestValueStore.record(single);
+            } else if (latestValueStore != null) {
+                EncodedBatch.Entry entry = single.getEntries().get(0);
+                latestValueStore.record(entry.getSeriesKey(), single.getPrecision().toNanos(entry.getTime()), fields);
+            }
             log.info("allbs-influx notice: InfluxDB data [{}] insertion successful.", point);
         } catch (Exception e) {
             log.error("allbs-influx warning! InfluxDB operation execution failed due to: {}", e.getLocalizedMessage());
@@ -245,6 +649,25 @@ public abstract class InfluxDbClient implements InfluxTemplate {
         }
     }
 
+    /**
+     * 创建数据点，time为0时以当前时间按时区换算的毫秒数为时间戳，各insert方法共用以保证时间戳一致
+     *
+     * @param measurement 表名
+     * @param tags        tag set
+     * @param fields      field set
+     * @param time        时间戳，为0时取当前时间
+     * @param timeUnit    时间戳的单位
+     * @param zoneOffset  时区
+     * @return 数据点
+     */
+    private static Point point(String measurement, Map<String, String> tags, Map<String, Object> fields, long time, TimeUnit timeUnit, ZoneOffset zoneOffset) {
+        if (time == 0) {
+            time = LocalDateTime.now().toInstant(zoneOffset).toEpochMilli();
+            timeUnit = TimeUnit.MILLISECONDS;
+        }
+        return Point.measurement(measurement).time(time, timeUnit).tag(tags).fields(fields).build();
+    }
+
     /**
      * 单条插入并指定时间
      *
@@ -310,7 +733,7 @@ public abstract class InfluxDbClient implements InfluxTemplate {
         }
 
         try {
-            influxdb.write(batchPoints);
+            writeBatch(batchPoints);
             log.info("allbs-influx notice: InfluxDB batch data [{}] insertion successful.", batchPoints);
         } catch (Exception e) {
             log.error("allbs-influx warning! InfluxDB operation execution failed due to: {}", e.getLocalizedMessage());
@@ -343,7 +766,7 @@ public abstract class InfluxDbClient implements InfluxTemplate {
         }
 
         try {
-            influxdb.write(batchPoints);
+            writeBatch(batchPoints);
             log.info("allbs-influx notice: InfluxDB batch data [{}] insertion successful", batchPoints);
         } catch (Exception e) {
             log.error("allbs-influx warning! InfluxDB operation execution failed due to: {}", e.getLocalizedMessage());
@@ -377,7 +800,7 @@ public abstract class InfluxDbClient implements InfluxTemplate {
         }
 
         try {
-            influxdb.write(batchPoints);
+            writeBatch(batchPoints);
             log.info("allbs-influx notice: InfluxDB batch data [{}] insertion successful.", batchPoints);
         } catch (Exception e) {
             log.error("allbs-influx warning! InfluxDB operation execution failed due to: {}", e.getLocalizedMessage());
@@ -394,7 +817,7 @@ public abstract class InfluxDbClient implements InfluxTemplate {
     public void batchInsert(BatchPoints batchPoints) {
         reConnect();
         try {
-            influxdb.write(batchPoints);
+            writeBatch(batchPoints);
             log.info("allbs-influx notice: InfluxDB batch data [{}] insertion successful.", batchPoints);
         } catch (Exception e) {
             log.error("allbs-influx warning! InfluxDB operation execution failed due to: {}", e.getLocalizedMessage());
@@ -402,6 +825,469 @@ public abstract class InfluxDbClient implements InfluxTemplate {
         }
     }
 
+    /**
+     * 按优先级插入，时间戳与 {@link #insert(String, Map, Map)} 相同，开启分优先级写入时异步发送，否则同步写入
+     *
+     * @param priority    优先级
+     * @param measurement 表名
+     * @param tags        tag set
+     * @param fields      field set
+     */
+    @Override
+    public void insert(WritePriority priority, String measurement, Map<String, String> tags, Map<String, Object> fields) {
+        PriorityWriter writer = priorityWriter();
+        if (writer == null) {
+            insert(measurement, tags, fields);
+            return;
+        }
+        writer.write(priority, database, retentionPolicy, point(measurement, tags, fields, 0, null, ZoneOffset.UTC));
+    }
+
+    /**
+     * 按优先级多库多表多条数据插入，开启分优先级写入时异步发送，否则同步写入
+     *
+     * @param priority    优先级
+     * @param batchPoints 多条插入数据
+     */
+    @Override
+    public void batchInsert(WritePriority priority, BatchPoints batchPoints) {
+        PriorityWriter writer = priorityWriter();
+        if (writer == null) {
+            batchInsert(batchPoints);
+            return;
+        }
+        String db = Optional.ofNullable(batchPoints.getDatabase()).orElse(database);
+        String rp = Optional.ofNullable(batchPoints.getRetentionPolicy()).orElse(retentionPolicy);
+        for (Point point : batchPoints.getPoints()) {
+            writer.write(priority, db, rp, point);
+        }
+    }
+
+    /**
+     * 分优先级写入器，首次使用时创建
+     *
+     * @return 未开启分优先级写入时返回null
+     */
+    private PriorityWriter priorityWriter() {
+        if (!influxDbProperties.getPriority().isEnabled()) {
+            return null;
+        }
+        PriorityWriter writer = priorityWriter;
+        if (writer != null) {
+            return writer;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new InfluxdbException("InfluxDB client is closed");
+            }
+            if (priorityWriter == null) {
+                priorityWriter = new PriorityWriter(influxDbProperties.getName(), influxDbProperties.getPriority(), batchPoints -> {
+                    reConnect();
+                    writeBatch(batchPoints);
+                });
+            }
+            return priorityWriter;
+        }
+    }
+
+    /**
+     * 单个series的列式写入，每批1MB
+     *
+     * @param measurement 表名
+     * @param tags        tag set
+     * @param times       时间戳
+     * @param timeUnit    时间戳的单位
+     * @param fields      字段名到与时间戳同长度的值
+     * @return 写入的采样数
+     */
+    @Override
+    public long writeColumns(String measurement, Map<String, String> tags, long[] times, TimeUnit timeUnit, Map<String, double[]> fields) {
+        ColumnarPoints points = ColumnarPoints.of(measurement, tags, times, timeUnit);
+        fields.forEach(points::field);
+        return writeColumns(points, COLUMNAR_BATCH_BYTES);
+    }
+
+    /**
+     * 单个series的列式写入，每批1MB
+     *
+     * @param points 列式数据
+     * @return 写入的采样数
+     */
+    @Override
+    public long writeColumns(ColumnarPoints points) {
+        return writeColumns(points, COLUMNAR_BATCH_BYTES);
+    }
+
+    /**
+     * 单个series的列式写入，直接编码为行协议并按字节数切分批次，不为每个采样创建对象；
+     * 异步初始化完成前与其他写入一样缓存，此时会转为数据点
+     *
+     * @param points     列式数据
+     * @param batchBytes 每批次字节数上限
+     * @return 写入的采样数
+     */
+    @Override
+    public long writeColumns(ColumnarPoints points, int batchBytes) {
+        reConnect();
+        if (influxDbProperties.getCardinality().isEnabled()) {
+            Map<String, String> tags = cardinalityGuard.checkSeries(points.getMeasurement(), points.getTags(), points.size());
+            if (tags == null) {
+                return 0;
+            }
+            if (tags != points.getTags()) {
+                points = points.withTags(tags);
+            }
+        }
+        if (!ready) {
+            return writePending(points);
+        }
+        boolean limited = influxDbProperties.getRateLimit().isEnabled();
+        String measurement = points.getMeasurement();
+        TimeUnit precision = points.getTimeUnit();
+        long[] written = new long[1];
+        long encoded;
+        try {
+            encoded = points.encode(batchBytes, (records, count) -> {
+                if (limited && !rateLimiter.acquire(database, measurement, count, records.length())) {
+                    return;
+                }
+                influxdb.write(database, retentionPolicy, InfluxDB.ConsistencyLevel.ALL, precision, records);
+                written[0] += count;
+            });
+        } catch (Exception e) {
+            log.error("allbs-influx warning! InfluxDB operation execution failed due to: {}", e.getLocalizedMessage());
+            throw new InfluxdbException("InfluxDB operation execution failed due to: " + e.getLocalizedMessage());
+        }
+        if (latestValueStore != null && written[0] == encoded) {
+            String seriesKey = LineProtocol.seriesKey(measurement, points.getTags());
+            long[] times = points.getTimes();
+            for (int i = Math.max(0, times.length - influxDbProperties.getLatest().getPointsPerSeries()); i < times.length; i++) {
+                Map<String, Object> fields = points.fields(i);
+                if (!fields.isEmpty()) {
+                    latestValueStore.record(seriesKey, precision.toNanos(times[i]), fields);
+                }
+            }
+        }
+        log.info("allbs-influx notice: InfluxDB columnar data of [{}] insertion successful, {} points.", measurement, written[0]);
+        return written[0];
+    }
+
+    /**
+     * 初始化完成前的列式写入转为数据点后按批量写入处理，限流后缓存，期间已完成初始化时直接写入
+     *
+     * @param points 列式数据
+     * @return 缓存或写入的采样数
+     */
+    private long writePending(ColumnarPoints points) {
+        TimeUnit precision = points.getTimeUnit();
+        long[] times = points.getTimes();
+        BatchPoints batchPoints = BatchPoints.database(database).retentionPolicy(retentionPolicy)
+                .consistency(InfluxDB.ConsistencyLevel.ALL).precision(precision).build();
+        for (int i = 0; i < times.length; i++) {
+            Map<String, Object> fields = points.fields(i);
+            if (fields.isEmpty()) {
+                continue;
+            }
+            Point.Builder builder = Point.measurement(points.getMeasurement()).time(times[i], precision).fields(fields);
+            if (points.getTags() != null) {
+                builder.tag(points.getTags());
+            }
+            batchPoints.point(builder.build());
+        }
+        if (batchPoints.getPoints().isEmpty()) {
+            return 0;
+        }
+        EncodedBatch batch = EncodedBatch.encode(batchPoints);
+        if (influxDbProperties.getRateLimit().isEnabled()) {
+            batch = rateLimiter.acquire(batch, database);
+            if (batch == null) {
+                return 0;
+            }
+        }
+        if (bufferIfNotReady(batch)) {
+            log.debug("allbs-influx notice: InfluxDB is not ready yet, columnar data of [{}] is buffered.", points.getMeasurement());
+        } else {
+            doWriteBatch(batch);
+        }
+        return batch.size();
+    }
+
+    /**
+     * 导出整张表为行协议文件，目标文件以.gz结尾时压缩
+     *
+     * @param measurement 表名
+     * @param target      目标文件
+     * @param progress    进度回调，可为null
+     * @return 导出结果
+     */
+    @Override
+    public TransferResult exportMeasurement(String measurement, Path target, TransferProgress progress) {
+        String command = "SELECT * FROM " + InfluxQl.identifier(retentionPolicy) + "." + InfluxQl.identifier(measurement) + " GROUP BY *";
+        return exportQuery(command, target, EXPORT_CHUNK_SIZE, progress);
+    }
+
+    /**
+     * 分块查询并导出为行协议文件，目标文件以.gz结尾时压缩
+     *
+     * @param command   sql语句
+     * @param target    目标文件
+     * @param chunkSize 每块行数
+     * @param progress  进度回调，可为null
+     * @return 导出结果
+     */
+    @Override
+    public TransferResult exportQuery(String command, Path target, int chunkSize, TransferProgress progress) {
+        reConnect();
+        ensureReady();
+        return new LineProtocolExporter(influxdb, database, retentionPolicy).export(command, target, chunkSize, progress);
+    }
+
+    /**
+     * 导入行协议文件，默认每批1MB，4个并发
+     *
+     * @param source   源文件
+     * @param progress 进度回调，可为null
+     * @return 导入结果
+     */
+    @Override
+    public TransferResult importLineProtocol(Path source, TransferProgress progress) {
+        return importLineProtocol(source, IMPORT_BATCH_BYTES, IMPORT_CONCURRENCY, progress);
+    }
+
+    /**
+     * 导入行协议文件
+     *
+     * @param source      源文件
+     * @param batchBytes  每批次字节数上限
+     * @param concurrency 并发写入数
+     * @param progress    进度回调，可为null
+     * @return 导入结果
+     */
+    @Override
+    public TransferResult importLineProtocol(Path source, int batchBytes, int concurrency, TransferProgress progress) {
+        reConnect();
+        ensureReady();
+        return new LineProtocolImporter(influxdb, database, retentionPolicy,
+                influxDbProperties.getCardinality().isEnabled() ? cardinalityGuard : null,
+                influxDbProperties.getRateLimit().isEnabled() ? rateLimiter : null).importFile(source, batchBytes, concurrency, progress);
+    }
+
+    /**
+     * 写入批量数据，批次只编码一次，之后各环节共用行协议: 开启基数保护及速率限制时先按阈值处理，未就绪时缓存，
+     * 启用整形时先按series分组排序，启用失败恢复时交由恢复策略处理
+     *
+     * @param batchPoints 批量数据
+     */
+    protected void writeBatch(BatchPoints batchPoints) {
+        EncodedBatch batch = EncodedBatch.encode(batchPoints);
+        if (influxDbProperties.getCardinality().isEnabled()) {
+            batch = cardinalityGuard.check(batch);
+            if (batch == null) {
+                return;
+            }
+        }
+        if (influxDbProperties.getRateLimit().isEnabled()) {
+            batch = rateLimiter.acquire(batch, database);
+            if (batch == null) {
+                return;
+            }
+        }
+        if (!bufferIfNotReady(batch)) {
+            doWriteBatch(batch);
+        }
+    }
+
+    private void doWriteBatch(EncodedBatch batch) {
+        if (influxDbProperties.isBatchShaping()) {
+            batch = batchShaper.shape(batch);
+        }
+        if (influxDbProperties.getRecovery().isEnabled()) {
+            recoveryStrategy.write(influxdb, batch);
+        } else {
+            batch.write(influxdb);
+        }
+        if (latestValueStore != null && isDefaultTarget(batch)) {
+            latestValueStore.record(batch);
+        }
+    }
+
+    private boolean isDefaultTarget(EncodedBatch batch) {
+        return (batch.getDatabase() == null || database.equals(batch.getDatabase()))
+                && (batch.getRetentionPolicy() == null || retentionPolicy.equals(batch.getRetentionPolicy()));
+    }
+
+    /**
+     * 查询series的最新数据点，启用最新值内存索引时优先从内存读取，未命中时查询数据库
+     *
+     * @param measurement 表名
+     * @param tags        tag set，需包含series的全部tag
+     * @return 最新数据点，时间格式化为yyyy-MM-dd HH:mm:ss，无数据时返回null
+     */
+    @Override
+    public Map<String, Object> latest(String measurement, Map<String, String> tags) {
+        if (latestValueStore != null) {
+            Map<String, Object> sample = latestValueStore.latest(LineProtocol.seriesKey(measurement, tags));
+            if (sample != null) {
+                return toRow(sample, tags);
+            }
+        }
+        List<Map<String, Object>> rows = queryMapList(seriesQuery(measurement, tags, null) + " ORDER BY time DESC LIMIT 1");
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * 查询series在最近一段时间内的数据点，启用最新值内存索引且内存完整覆盖该时间段时从内存读取，否则查询数据库
+     *
+     * @param measurement 表名
+     * @param tags        tag set，需包含series的全部tag
+     * @param window      时间段
+     * @return 数据点，按时间倒序，时间格式化为yyyy-MM-dd HH:mm:ss
+     */
+    @Override
+    public List<Map<String, Object>> recent(String measurement, Map<String, String> tags, Duration window) {
+        if (latestValueStore != null) {
+            long from = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - window.toMillis());
+            List<Map<String, Object>> samples = latestValueStore.recent(LineProtocol.seriesKey(measurement, tags), from);
+            if (samples != null) {
+                return samples.stream().map(sample -> toRow(sample, tags)).collect(Collectors.toList());
+            }
+        }
+        return queryMapList(seriesQuery(measurement, tags, window) + " ORDER BY time DESC");
+    }
+
+    private static String seriesQuery(String measurement, Map<String, String> tags, Duration window) {
+        StringJoiner where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+        if (tags != null) {
+            tags.forEach((k, v) -> {
+                if (v != null && !v.isEmpty()) {
+                    where.add(InfluxQl.identifier(k) + "=" + InfluxQl.string(v));
+                }
+            });
+        }
+        if (window != null) {
+            where.add("time >= now() - " + window.toMillis() + "ms");
+        }
+        return "SELECT * FROM " + InfluxQl.identifier(measurement) + where;
+    }
+
+    private static Map<String, Object> toRow(Map<String, Object> sample, Map<String, String> tags) {
+        Map<String, Object> row = new HashMap<>(sample);
+        if (tags != null) {
+            tags.forEach((k, v) -> {
+                if (v != null && !v.isEmpty()) {
+                    row.put(k, v);
+                }
+            });
+        }
+        row.put("time", toDateTime(sample.get(LatestValueStore.TIME)).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        return row;
+    }
+
+    /**
+     * 转换time列，JSON响应为RFC3339字符串，MessagePack响应为纳秒时间戳
+     *
+     * @param value time列的值
+     * @return UTC时间
+     */
+    private static LocalDateTime toDateTime(Object value) {
+        if (value instanceof Number) {
+            long nanos = ((Number) value).longValue();
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+        }
+        return LocalDateTime.parse(value.toString(), DateTimeFormatter.ISO_DATE_TIME);
+    }
+
+    private static long toNanos(Object value) {
+        LocalDateTime time = toDateTime(value);
+        return TimeUnit.SECONDS.toNanos(time.toEpochSecond(ZoneOffset.UTC)) + time.getNano();
+    }
+
+    /**
+     * MessagePack响应中较小的整数会解码为Integer，统一为Long
+     */
+    private static Object normalize(Object value) {
+        return value instanceof Integer ? Long.valueOf((Integer) value) : value;
+    }
+
+    /**
+     * 批量写入失败恢复的统计指标
+     *
+     * @return 统计指标
+     */
+    @Override
+    public RecoveryMetrics recoveryMetrics() {
+        return recoveryStrategy.getMetrics();
+    }
+
+    /**
+     * 写入速率限制的统计指标
+     *
+     * @return 统计指标
+     */
+    @Override
+    public RateLimitMetrics rateLimitMetrics() {
+        return rateLimiter.getMetrics();
+    }
+
+    /**
+     * 各表的series数估算值
+     *
+     * @return key为表名
+     */
+    @Override
+    public Map<String, Long> seriesCardinality() {
+        return cardinalityGuard.seriesCardinality();
+    }
+
+    /**
+     * 表中各tag key的不同值个数估算值
+     *
+     * @param measurement 表名
+     * @return key为tag key
+     */
+    @Override
+    public Map<String, Long> tagCardinality(String measurement) {
+        return cardinalityGuard.tagCardinality(measurement);
+    }
+
+    /**
+     * series基数保护的统计指标
+     *
+     * @return 统计指标
+     */
+    @Override
+    public CardinalityMetrics cardinalityMetrics() {
+        return cardinalityGuard.getMetrics();
+    }
+
+    /**
+     * 清除表的series基数统计
+     *
+     * @param measurement 表名
+     */
+    @Override
+    public void resetCardinality(String measurement) {
+        cardinalityGuard.reset(measurement);
+    }
+
+    /**
+     * 清除所有表的series基数统计
+     */
+    @Override
+    public void resetCardinality() {
+        cardinalityGuard.reset();
+    }
+
+    /**
+     * 多副本竞速读取的统计指标
+     *
+     * @return 统计指标，未配置副本时全部为0
+     */
+    @Override
+    public HedgeMetrics hedgeMetrics() {
+        return hedgedReader == null ? new HedgeMetrics() : hedgedReader.getMetrics();
+    }
+
     /**
      * 批量操作结束时手动刷新数据
      */
@@ -448,12 +1334,49 @@ public abstract class InfluxDbClient implements InfluxTemplate {
         }
     }
 
+    /**
+     * 关闭连接并释放HTTP连接池、批量写入等线程资源
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (bootstrapExecutor != null) {
+            bootstrapExecutor.shutdownNow();
+        }
+        if (priorityWriter != null) {
+            priorityWriter.close();
+            priorityWriter = null;
+        }
+        if (hedgedReader != null) {
+            hedgedReader.close();
+            hedgedReader = null;
+        }
+        if (influxdb != null) {
+            influxdb.close();
+            influxdb = null;
+        }
+    }
+
+    /**
+     * 接管另一个客户端已建立的连接及副本，被接管的客户端不再持有这些资源，可直接关闭
+     *
+     * @param other 已完成初始化的客户端
+     */
+    protected synchronized void takeOver(InfluxDbClient other) {
+        synchronized (other) {
+            this.influxdb = other.influxdb;
+            this.hedgedReader = other.hedgedReader;
+            other.influxdb = null;
+            other.hedgedReader = null;
+        }
+    }
+
     /**
      * 断线重连
      */
     @Override
     public void reConnect() {
-        if (influxdb == null) {
+        if (influxdb == null && !bootstrapping) {
             this.influxdb = buildInfluxDb();
         }
     }
@@ -3,13 +3,19 @@ package cn.allbs.influx;
 import cn.allbs.influx.client.DefaultInfluxTemplate;
 import cn.allbs.influx.client.NullInfluxTemplate;
 import cn.allbs.influx.exception.InfluxdbException;
+import cn.allbs.influx.health.InfluxDbHealthConfiguration;
+import cn.allbs.influx.recovery.DeadLetterHandler;
+import cn.allbs.influx.util.NamedThreadFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.influxdb.BatchOptions;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
 
 /**
  * 功能:
@@ -20,6 +26,7 @@ import org.springframework.context.annotation.Configuration;
  */
 @Configuration
 @EnableConfigurationProperties({InfluxDbProperties.class})
+@Import({InfluxConnectionsRegistrar.class, InfluxDbHealthConfiguration.class})
 public class InfluxDbConfiguration {
 
     private final InfluxDbProperties influxDbProperties;
@@ -29,20 +36,53 @@ public class InfluxDbConfiguration {
     }
 
     @Bean
+    @Primary
     @ConditionalOnClass({ObjectMapper.class})
     @ConditionalOnMissingBean(InfluxTemplate.class)
-    public InfluxTemplate influxTemplate() {
-        BatchOptions batchOptions = BatchOptions.DEFAULTS;
+    public InfluxTemplate influxTemplate(ObjectProvider<DeadLetterHandler> deadLetterHandler) {
+        return createInfluxTemplate(influxDbProperties, deadLetterHandler);
+    }
+
+    /**
+     * 按连接配置创建template，默认连接及命名连接共用
+     *
+     * @param influxDbProperties 连接配置
+     * @param deadLetterHandler  死信处理器
+     * @return template
+     */
+    static InfluxTemplate createInfluxTemplate(InfluxDbProperties influxDbProperties, ObjectProvider<DeadLetterHandler> deadLetterHandler) {
+        BatchOptions batchOptions = batchOptions(influxDbProperties);
+        InfluxDbClient influxDbClient = null;
         try {
-            InfluxTemplate influxDbClient = new DefaultInfluxTemplate(influxDbProperties, batchOptions);
-            influxDbClient.createRetentionPolicy();
+            influxDbClient = new DefaultInfluxTemplate(influxDbProperties, batchOptions);
+            deadLetterHandler.ifAvailable(influxDbClient::setDeadLetterHandler);
+            if (influxDbProperties.getInit().isAsync()) {
+                influxDbClient.bootstrapAsync();
+            } else {
+                influxDbClient.bootstrap();
+            }
             return influxDbClient;
         } catch (Exception e) {
-            if (this.influxDbProperties.isSkipError()) {
-                return new NullInfluxTemplate(influxDbProperties, batchOptions);
+            if (influxDbClient != null) {
+                influxDbClient.close();
+            }
+            if (influxDbProperties.isSkipError()) {
+                InfluxDbClient nullInfluxTemplate = new NullInfluxTemplate(influxDbProperties, batchOptions);
+                deadLetterHandler.ifAvailable(nullInfluxTemplate::setDeadLetterHandler);
+                return nullInfluxTemplate;
             } else {
                 throw new InfluxdbException("Failed to create InfluxDbClient bean", e);
             }
         }
     }
+
+    private static BatchOptions batchOptions(InfluxDbProperties influxDbProperties) {
+        InfluxDbProperties.Batch batch = influxDbProperties.getBatch();
+        return BatchOptions.DEFAULTS
+                .actions(batch.getActions())
+                .flushDuration(batch.getFlushDuration())
+                .jitterDuration(batch.getJitterDuration())
+                .bufferLimit(batch.getBufferLimit())
+                .threadFactory(new NamedThreadFactory("allbs-influx-" + influxDbProperties.getName() + "-batch"));
+    }
 }
@@ -1,8 +1,16 @@
 package cn.allbs.influx;
 
+import cn.allbs.influx.cardinality.CardinalityAction;
+import cn.allbs.influx.write.RateLimitMode;
+import org.influxdb.BatchOptions;
+import org.influxdb.InfluxDB;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -42,12 +50,72 @@ public class InfluxDbProperties {
     private String retentionPolicyTime;
 
     private boolean skipError = false;
+    /**
+     * 批量写入失败恢复配置
+     */
+    private Recovery recovery = new Recovery();
+    /**
+     * 降采样层，启动时创建对应的保留策略及连续查询
+     */
+    private List<Rollup> rollups = new ArrayList<>();
+    /**
+     * 是否将 GROUP BY time(x) 聚合查询自动路由至降采样层，降采样层仅包含创建之后已结束的时间窗口，默认关闭
+     */
+    private boolean rollupRouting = false;
+    /**
+     * 批量写入前是否按series分组、按时间排序并合并重复数据点
+     */
+    private boolean batchShaping = false;
+    /**
+     * 最新值内存索引配置
+     */
+    private Latest latest = new Latest();
+    /**
+     * 连接名，用于线程命名，命名连接取其在connections中的key
+     */
+    private String name = "default";
+    /**
+     * HTTP连接池配置
+     */
+    private Http http = new Http();
+    /**
+     * 批量写入(enableBatch)配置
+     */
+    private Batch batch = new Batch();
+    /**
+     * 查询响应格式 JSON/MSGPACK，MSGPACK需InfluxDB 1.4及以上版本
+     */
+    private InfluxDB.ResponseFormat responseFormat = InfluxDB.ResponseFormat.JSON;
+    /**
+     * 启动初始化配置
+     */
+    private Init init = new Init();
+    /**
+     * 分优先级写入配置
+     */
+    private Priority priority = new Priority();
+    /**
+     * 写入速率限制配置
+     */
+    private RateLimit rateLimit = new RateLimit();
+    /**
+     * series基数保护配置
+     */
+    private Cardinality cardinality = new Cardinality();
+    /**
+     * 多副本竞速读取配置
+     */
+    private Replicas replicas = new Replicas();
+    /**
+     * 命名连接，每个连接拥有独立的template、HTTP连接池、批量写入缓冲及线程，可通过 @Qualifier("连接名") 注入
+     */
+    private Map<String, InfluxDbProperties> connections = new LinkedHashMap<>();
 
     public InfluxDbProperties() {
     }
 
     public String toString() {
-        return "InfluxDbProperties(openUrl=" + this.getOpenUrl() + ", username=" + this.getUsername() + ", password=[protected], database=" + this.getDatabase() + ", retentionPolicy=" + this.getRetentionPolicy() + ", retentionPolicyTime=" + this.getRetentionPolicyTime() + ", skipError=" + this.isSkipError() + ")";
+        return "InfluxDbProperties(openUrl=" + this.getOpenUrl() + ", username=" + this.getUsername() + ", password=[protected], database=" + this.getDatabase() + ", retentionPolicy=" + this.getRetentionPolicy() + ", retentionPolicyTime=" + this.getRetentionPolicyTime() + ", skipError=" + this.isSkipError() + ", recovery=" + this.getRecovery() + ", rollups=" + this.getRollups() + ", rollupRouting=" + this.isRollupRouting() + ", batchShaping=" + this.isBatchShaping() + ", latest=" + this.getLatest() + ", name=" + this.getName() + ", http=" + this.getHttp() + ", batch=" + this.getBatch() + ", responseFormat=" + this.getResponseFormat() + ", init=" + this.getInit() + ", priority=" + this.getPriority() + ", rateLimit=" + this.getRateLimit() + ", cardinality=" + this.getCardinality() + ", replicas=" + this.getReplicas() + ", connections=" + this.getConnections() + ")";
     }
 
     public String getOpenUrl() {
@@ -78,6 +146,66 @@ public class InfluxDbProperties {
         return this.skipError;
     }
 
+    public Recovery getRecovery() {
+        return this.recovery;
+    }
+
+    public List<Rollup> getRollups() {
+        return this.rollups;
+    }
+
+    public boolean isRollupRouting() {
+        return this.rollupRouting;
+    }
+
+    public boolean isBatchShaping() {
+        return this.batchShaping;
+    }
+
+    public Latest getLatest() {
+        return this.latest;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public Http getHttp() {
+        return this.http;
+    }
+
+    public Batch getBatch() {
+        return this.batch;
+    }
+
+    public InfluxDB.ResponseFormat getResponseFormat() {
+        return this.responseFormat;
+    }
+
+    public Init getInit() {
+        return this.init;
+    }
+
+    public Priority getPriority() {
+        return this.priority;
+    }
+
+    public RateLimit getRateLimit() {
+        return this.rateLimit;
+    }
+
+    public Cardinality getCardinality() {
+        return this.cardinality;
+    }
+
+    public Replicas getReplicas() {
+        return this.replicas;
+    }
+
+    public Map<String, InfluxDbProperties> getConnections() {
+        return this.connections;
+    }
+
     public void setOpenUrl(String openUrl) {
         this.openUrl = openUrl;
     }
@@ -106,6 +234,66 @@ public class InfluxDbProperties {
         this.skipError = skipError;
     }
 
+    public void setRecovery(Recovery recovery) {
+        this.recovery = recovery;
+    }
+
+    public void setRollups(List<Rollup> rollups) {
+        this.rollups = rollups;
+    }
+
+    public void setRollupRouting(boolean rollupRouting) {
+        this.rollupRouting = rollupRouting;
+    }
+
+    public void setBatchShaping(boolean batchShaping) {
+        this.batchShaping = batchShaping;
+    }
+
+    public void setLatest(Latest latest) {
+        this.latest = latest;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setHttp(Http http) {
+        this.http = http;
+    }
+
+    public void setBatch(Batch batch) {
+        this.batch = batch;
+    }
+
+    public void setResponseFormat(InfluxDB.ResponseFormat responseFormat) {
+        this.responseFormat = responseFormat;
+    }
+
+    public void setInit(Init init) {
+        this.init = init;
+    }
+
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
+    public void setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public void setCardinality(Cardinality cardinality) {
+        this.cardinality = cardinality;
+    }
+
+    public void setReplicas(Replicas replicas) {
+        this.replicas = replicas;
+    }
+
+    public void setConnections(Map<String, InfluxDbProperties> connections) {
+        this.connections = connections;
+    }
+
     public boolean equals(final Object o) {
         if (o == this) return true;
         if (!(o instanceof InfluxDbProperties)) return false;
@@ -132,6 +320,47 @@ public class InfluxDbProperties {
         if (!Objects.equals(this$retentionPolicyTime, other$retentionPolicyTime))
             return false;
         if (this.isSkipError() != other.isSkipError()) return false;
+        final Object this$recovery = this.getRecovery();
+        final Object other$recovery = other.getRecovery();
+        if (!Objects.equals(this$recovery, other$recovery)) return false;
+        final Object this$rollups = this.getRollups();
+        final Object other$rollups = other.getRollups();
+        if (!Objects.equals(this$rollups, other$rollups)) return false;
+        if (this.isRollupRouting() != other.isRollupRouting()) return false;
+        if (this.isBatchShaping() != other.isBatchShaping()) return false;
+        final Object this$latest = this.getLatest();
+        final Object other$latest = other.getLatest();
+        if (!Objects.equals(this$latest, other$latest)) return false;
+        final Object this$name = this.getName();
+        final Object other$name = other.getName();
+        if (!Objects.equals(this$name, other$name)) return false;
+        final Object this$http = this.getHttp();
+        final Object other$http = other.getHttp();
+        if (!Objects.equals(this$http, other$http)) return false;
+        final Object this$batch = this.getBatch();
+        final Object other$batch = other.getBatch();
+        if (!Objects.equals(this$batch, other$batch)) return false;
+        final Object this$responseFormat = this.getResponseFormat();
+        final Object other$responseFormat = other.getResponseFormat();
+        if (!Objects.equals(this$responseFormat, other$responseFormat)) return false;
+        final Object this$init = this.getInit();
+        final Object other$init = other.getInit();
+        if (!Objects.equals(this$init, other$init)) return false;
+        final Object this$priority = this.getPriority();
+        final Object other$priority = other.getPriority();
+        if (!Objects.equals(this$priority, other$priority)) return false;
+        final Object this$rateLimit = this.getRateLimit();
+        final Object other$rateLimit = other.getRateLimit();
+        if (!Objects.equals(this$rateLimit, other$rateLimit)) return false;
+        final Object this$cardinality = this.getCardinality();
+        final Object other$cardinality = other.getCardinality();
+        if (!Objects.equals(this$cardinality, other$cardinality)) return false;
+        final Object this$replicas = this.getReplicas();
+        final Object other$replicas = other.getReplicas();
+        if (!Objects.equals(this$replicas, other$replicas)) return false;
+        final Object this$connections = this.getConnections();
+        final Object other$connections = other.getConnections();
+        if (!Objects.equals(this$connections, other$connections)) return false;
         return true;
     }
 
@@ -155,6 +384,926 @@ public class InfluxDbProperties {
         final Object $retentionPolicyTime = this.getRetentionPolicyTime();
         result = result * PRIME + ($retentionPolicyTime == null ? 43 : $retentionPolicyTime.hashCode());
         result = result * PRIME + (this.isSkipError() ? 79 : 97);
+        final Object $recovery = this.getRecovery();
+        result = result * PRIME + ($recovery == null ? 43 : $recovery.hashCode());
+        final Object $rollups = this.getRollups();
+        result = result * PRIME + ($rollups == null ? 43 : $rollups.hashCode());
+        result = result * PRIME + (this.isRollupRouting() ? 79 : 97);
+        result = result * PRIME + (this.isBatchShaping() ? 79 : 97);
+        final Object $latest = this.getLatest();
+        result = result * PRIME + ($latest == null ? 43 : $latest.hashCode());
+        final Object $name = this.getName();
+        result = result * PRIME + ($name == null ? 43 : $name.hashCode());
+        final Object $http = this.getHttp();
+        result = result * PRIME + ($http == null ? 43 : $http.hashCode());
+        final Object $batch = this.getBatch();
+        result = result * PRIME + ($batch == null ? 43 : $batch.hashCode());
+        final Object $responseFormat = this.getResponseFormat();
+        result = result * PRIME + ($responseFormat == null ? 43 : $responseFormat.hashCode());
+        final Object $init = this.getInit();
+        result = result * PRIME + ($init == null ? 43 : $init.hashCode());
+        final Object $priority = this.getPriority();
+        result = result * PRIME + ($priority == null ? 43 : $priority.hashCode());
+        final Object $rateLimit = this.getRateLimit();
+        result = result * PRIME + ($rateLimit == null ? 43 : $rateLimit.hashCode());
+        final Object $cardinality = this.getCardinality();
+        result = result * PRIME + ($cardinality == null ? 43 : $cardinality.hashCode());
+        final Object $replicas = this.getReplicas();
+        result = result * PRIME + ($replicas == null ? 43 : $replicas.hashCode());
+        final Object $connections = this.getConnections();
+        result = result * PRIME + ($connections == null ? 43 : $connections.hashCode());
         return result;
     }
+
+    /**
+     * 批量写入失败恢复配置
+     */
+    public static class Recovery {
+
+        /**
+         * 是否启用失败恢复，启用后临时性错误将重试，数据点错误将二分定位并投递至死信处理器
+         */
+        private boolean enabled = false;
+        /**
+         * 临时性错误最大重试次数
+         */
+        private int maxRetries = 3;
+        /**
+         * 首次重试退避时间(毫秒)
+         */
+        private long initialBackoff = 200;
+        /**
+         * 最大退避时间(毫秒)
+         */
+        private long maxBackoff = 5000;
+        /**
+         * 退避倍数
+         */
+        private double multiplier = 2.0;
+        /**
+         * 单次写入重试的总时长上限(毫秒)，重试在写入线程中进行，超出后不再重试
+         */
+        private long maxRetryTime = 10000;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public int getMaxRetries() {
+            return this.maxRetries;
+        }
+
+        public long getInitialBackoff() {
+            return this.initialBackoff;
+        }
+
+        public long getMaxBackoff() {
+            return this.maxBackoff;
+        }
+
+        public double getMultiplier() {
+            return this.multiplier;
+        }
+
+        public long getMaxRetryTime() {
+            return this.maxRetryTime;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public void setInitialBackoff(long initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public void setMaxBackoff(long maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        public void setMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+        }
+
+        public void setMaxRetryTime(long maxRetryTime) {
+            this.maxRetryTime = maxRetryTime;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.Recovery(enabled=" + this.isEnabled() + ", maxRetries=" + this.getMaxRetries() + ", initialBackoff=" + this.getInitialBackoff() + ", maxBackoff=" + this.getMaxBackoff() + ", multiplier=" + this.getMultiplier() + ", maxRetryTime=" + this.getMaxRetryTime() + ")";
+        }
+    }
+
+    /**
+     * 降采样层配置
+     */
+    public static class Rollup {
+
+        /**
+         * 保留策略名，连续查询名为 cq_保留策略名
+         */
+        private String name;
+        /**
+         * 保留时限 如90d，0s为永久
+         */
+        private String duration;
+        /**
+         * 聚合时间粒度 如1h
+         */
+        private String interval;
+        /**
+         * 聚合函数，连续查询以 函数(*) 生成，字段名为 函数_字段名
+         */
+        private String aggregation = "mean";
+        /**
+         * 参与降采样的表名正则
+         */
+        private String measurements = ".*";
+        /**
+         * 副本个数
+         */
+        private int replication = 1;
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String getDuration() {
+            return this.duration;
+        }
+
+        public String getInterval() {
+            return this.interval;
+        }
+
+        public String getAggregation() {
+            return this.aggregation;
+        }
+
+        public String getMeasurements() {
+            return this.measurements;
+        }
+
+        public int getReplication() {
+            return this.replication;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setDuration(String duration) {
+            this.duration = duration;
+        }
+
+        public void setInterval(String interval) {
+            this.interval = interval;
+        }
+
+        public void setAggregation(String aggregation) {
+            this.aggregation = aggregation;
+        }
+
+        public void setMeasurements(String measurements) {
+            this.measurements = measurements;
+        }
+
+        public void setReplication(int replication) {
+            this.replication = replication;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.Rollup(name=" + this.getName() + ", duration=" + this.getDuration() + ", interval=" + this.getInterval() + ", aggregation=" + this.getAggregation() + ", measurements=" + this.getMeasurements() + ", replication=" + this.getReplication() + ")";
+        }
+    }
+
+    /**
+     * 最新值内存索引配置
+     */
+    public static class Latest {
+
+        /**
+         * 是否启用，启用后写入时同步记录每个series最近的数据点
+         */
+        private boolean enabled = false;
+        /**
+         * 每个series保留的数据点数
+         */
+        private int pointsPerSeries = 16;
+        /**
+         * 内存上限(字节)，超出时淘汰最久未访问的series
+         */
+        private long maxMemoryBytes = 64L * 1024 * 1024;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public int getPointsPerSeries() {
+            return this.pointsPerSeries;
+        }
+
+        public long getMaxMemoryBytes() {
+            return this.maxMemoryBytes;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setPointsPerSeries(int pointsPerSeries) {
+            this.pointsPerSeries = pointsPerSeries;
+        }
+
+        public void setMaxMemoryBytes(long maxMemoryBytes) {
+            this.maxMemoryBytes = maxMemoryBytes;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.Latest(enabled=" + this.isEnabled() + ", pointsPerSeries=" + this.getPointsPerSeries() + ", maxMemoryBytes=" + this.getMaxMemoryBytes() + ")";
+        }
+    }
+
+    /**
+     * HTTP连接池配置
+     */
+    public static class Http {
+
+        /**
+         * 最大空闲连接数
+         */
+        private int maxIdleConnections = 5;
+        /**
+         * 空闲连接保持时间(毫秒)
+         */
+        private long keepAlive = 300000;
+        /**
+         * 最大并发请求数
+         */
+        private int maxRequests = 64;
+        /**
+         * 连接超时(毫秒)
+         */
+        private long connectTimeout = 10000;
+        /**
+         * 读超时(毫秒)
+         */
+        private long readTimeout = 10000;
+        /**
+         * 写超时(毫秒)
+         */
+        private long writeTimeout = 10000;
+
+        public int getMaxIdleConnections() {
+            return this.maxIdleConnections;
+        }
+
+        public long getKeepAlive() {
+            return this.keepAlive;
+        }
+
+        public int getMaxRequests() {
+            return this.maxRequests;
+        }
+
+        public long getConnectTimeout() {
+            return this.connectTimeout;
+        }
+
+        public long getReadTimeout() {
+            return this.readTimeout;
+        }
+
+        public long getWriteTimeout() {
+            return this.writeTimeout;
+        }
+
+        public void setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+        }
+
+        public void setKeepAlive(long keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public void setMaxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+        }
+
+        public void setConnectTimeout(long connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public void setReadTimeout(long readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public void setWriteTimeout(long writeTimeout) {
+            this.writeTimeout = writeTimeout;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.Http(maxIdleConnections=" + this.getMaxIdleConnections() + ", keepAlive=" + this.getKeepAlive() + ", maxRequests=" + this.getMaxRequests() + ", connectTimeout=" + this.getConnectTimeout() + ", readTimeout=" + this.getReadTimeout() + ", writeTimeout=" + this.getWriteTimeout() + ")";
+        }
+    }
+
+    /**
+     * 批量写入(enableBatch)配置
+     */
+    public static class Batch {
+
+        /**
+         * 缓冲达到该条数时写入
+         */
+        private int actions = BatchOptions.DEFAULT_BATCH_ACTIONS_LIMIT;
+        /**
+         * 定时写入间隔(毫秒)
+         */
+        private int flushDuration = BatchOptions.DEFAULT_BATCH_INTERVAL_DURATION;
+        /**
+         * 写入间隔随机抖动(毫秒)
+         */
+        private int jitterDuration = BatchOptions.DEFAULT_JITTER_INTERVAL_DURATION;
+        /**
+         * 写入失败重试缓冲上限(条)
+         */
+        private int bufferLimit = BatchOptions.DEFAULT_BUFFER_LIMIT;
+
+        public int getActions() {
+            return this.actions;
+        }
+
+        public int getFlushDuration() {
+            return this.flushDuration;
+        }
+
+        public int getJitterDuration() {
+            return this.jitterDuration;
+        }
+
+        public int getBufferLimit() {
+            return this.bufferLimit;
+        }
+
+        public void setActions(int actions) {
+            this.actions = actions;
+        }
+
+        public void setFlushDuration(int flushDuration) {
+            this.flushDuration = flushDuration;
+        }
+
+        public void setJitterDuration(int jitterDuration) {
+            this.jitterDuration = jitterDuration;
+        }
+
+        public void setBufferLimit(int bufferLimit) {
+            this.bufferLimit = bufferLimit;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.Batch(actions=" + this.getActions() + ", flushDuration=" + this.getFlushDuration() + ", jitterDuration=" + this.getJitterDuration() + ", bufferLimit=" + this.getBufferLimit() + ")";
+        }
+    }
+
+    /**
+     * 启动初始化配置
+     */
+    public static class Init {
+
+        /**
+         * 是否异步初始化，开启后template立即返回，连接及建库、保留策略、降采样层在后台重试直至成功
+         */
+        private boolean async = false;
+        /**
+         * 首次重试间隔(毫秒)
+         */
+        private long retryInterval = 1000;
+        /**
+         * 最大重试间隔(毫秒)
+         */
+        private long maxRetryInterval = 60000;
+        /**
+         * 初始化完成前缓存的写入批次数上限，超出时写入抛出异常
+         */
+        private int bufferLimit = 10000;
+
+        public boolean isAsync() {
+            return this.async;
+        }
+
+        public long getRetryInterval() {
+            return this.retryInterval;
+        }
+
+        public long getMaxRetryInterval() {
+            return this.maxRetryInterval;
+        }
+
+        public int getBufferLimit() {
+            return this.bufferLimit;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        public void setRetryInterval(long retryInterval) {
+            this.retryInterval = retryInterval;
+        }
+
+        public void setMaxRetryInterval(long maxRetryInterval) {
+            this.maxRetryInterval = maxRetryInterval;
+        }
+
+        public void setBufferLimit(int bufferLimit) {
+            this.bufferLimit = bufferLimit;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.Init(async=" + this.isAsync() + ", retryInterval=" + this.getRetryInterval() + ", maxRetryInterval=" + this.getMaxRetryInterval() + ", bufferLimit=" + this.getBufferLimit() + ")";
+        }
+    }
+
+    /**
+     * 分优先级写入配置
+     */
+    public static class Priority {
+
+        /**
+         * 是否开启分优先级写入，未开启时带优先级的写入方法同步写入
+         */
+        private boolean enabled = false;
+        /**
+         * 高优先级
+         */
+        private Lane high = new Lane(10000, 200, 10, 4, 0, 0);
+        /**
+         * 普通优先级
+         */
+        private Lane normal = new Lane(50000, 1000, 100, 2, 0, 1000);
+        /**
+         * 低优先级
+         */
+        private Lane low = new Lane(100000, 5000, 1000, 1, 500, 5000);
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public Lane getHigh() {
+            return this.high;
+        }
+
+        public Lane getNormal() {
+            return this.normal;
+        }
+
+        public Lane getLow() {
+            return this.low;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setHigh(Lane high) {
+            this.high = high;
+        }
+
+        public void setNormal(Lane normal) {
+            this.normal = normal;
+        }
+
+        public void setLow(Lane low) {
+            this.low = low;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.Priority(enabled=" + this.isEnabled() + ", high=" + this.getHigh() + ", normal=" + this.getNormal() + ", low=" + this.getLow() + ")";
+        }
+    }
+
+    /**
+     * 单个优先级的写入配置
+     */
+    public static class Lane {
+
+        /**
+         * 队列容量(数据点数)
+         */
+        private int capacity;
+        /**
+         * 每批次最大数据点数
+         */
+        private int maxBatch;
+        /**
+         * 数据点最长排队时间(毫秒)，即该优先级的写入延迟目标
+         */
+        private long flushInterval;
+        /**
+         * 同时在途的HTTP写入请求数
+         */
+        private int concurrency;
+        /**
+         * 更高优先级繁忙时最长让出时间(毫秒)，0为不让出
+         */
+        private long yieldTimeout;
+        /**
+         * 队列满时入队最长等待时间(毫秒)，超时抛出异常
+         */
+        private long enqueueTimeout;
+
+        public Lane() {
+        }
+
+        public Lane(int capacity, int maxBatch, long flushInterval, int concurrency, long yieldTimeout, long enqueueTimeout) {
+            this.capacity = capacity;
+            this.maxBatch = maxBatch;
+            this.flushInterval = flushInterval;
+            this.concurrency = concurrency;
+            this.yieldTimeout = yieldTimeout;
+            this.enqueueTimeout = enqueueTimeout;
+        }
+
+        public int getCapacity() {
+            return this.capacity;
+        }
+
+        public int getMaxBatch() {
+            return this.maxBatch;
+        }
+
+        public long getFlushInterval() {
+            return this.flushInterval;
+        }
+
+        public int getConcurrency() {
+            return this.concurrency;
+        }
+
+        public long getYieldTimeout() {
+            return this.yieldTimeout;
+        }
+
+        public long getEnqueueTimeout() {
+            return this.enqueueTimeout;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public void setMaxBatch(int maxBatch) {
+            this.maxBatch = maxBatch;
+        }
+
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public void setYieldTimeout(long yieldTimeout) {
+            this.yieldTimeout = yieldTimeout;
+        }
+
+        public void setEnqueueTimeout(long enqueueTimeout) {
+            this.enqueueTimeout = enqueueTimeout;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.Lane(capacity=" + this.getCapacity() + ", maxBatch=" + this.getMaxBatch() + ", flushInterval=" + this.getFlushInterval() + ", concurrency=" + this.getConcurrency() + ", yieldTimeout=" + this.getYieldTimeout() + ", enqueueTimeout=" + this.getEnqueueTimeout() + ")";
+        }
+    }
+
+    /**
+     * 写入速率限制配置
+     */
+    public static class RateLimit {
+
+        /**
+         * 是否开启写入速率限制
+         */
+        private boolean enabled = false;
+        /**
+         * 超出限制时的处理方式 BLOCK/DELAY/DROP
+         */
+        private RateLimitMode mode = RateLimitMode.BLOCK;
+        /**
+         * DELAY模式下最长等待时间(毫秒)
+         */
+        private long maxDelay = 1000;
+        /**
+         * 全局限制
+         */
+        private Limit global = new Limit();
+        /**
+         * 按库限制，key为库名
+         */
+        private Map<String, Limit> databases = new LinkedHashMap<>();
+        /**
+         * 按表限制，key为表名
+         */
+        private Map<String, Limit> measurements = new LinkedHashMap<>();
+        /**
+         * 未在measurements中配置的表各自的限制
+         */
+        private Limit measurementDefault = new Limit();
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public RateLimitMode getMode() {
+            return this.mode;
+        }
+
+        public long getMaxDelay() {
+            return this.maxDelay;
+        }
+
+        public Limit getGlobal() {
+            return this.global;
+        }
+
+        public Map<String, Limit> getDatabases() {
+            return this.databases;
+        }
+
+        public Map<String, Limit> getMeasurements() {
+            return this.measurements;
+        }
+
+        public Limit getMeasurementDefault() {
+            return this.measurementDefault;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setMode(RateLimitMode mode) {
+            this.mode = mode;
+        }
+
+        public void setMaxDelay(long maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public void setGlobal(Limit global) {
+            this.global = global;
+        }
+
+        public void setDatabases(Map<String, Limit> databases) {
+            this.databases = databases;
+        }
+
+        public void setMeasurements(Map<String, Limit> measurements) {
+            this.measurements = measurements;
+        }
+
+        public void setMeasurementDefault(Limit measurementDefault) {
+            this.measurementDefault = measurementDefault;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.RateLimit(enabled=" + this.isEnabled() + ", mode=" + this.getMode() + ", maxDelay=" + this.getMaxDelay() + ", global=" + this.getGlobal() + ", databases=" + this.getDatabases() + ", measurements=" + this.getMeasurements() + ", measurementDefault=" + this.getMeasurementDefault() + ")";
+        }
+    }
+
+    /**
+     * 单个对象的写入速率限制
+     */
+    public static class Limit {
+
+        /**
+         * 每秒数据点数，0为不限制
+         */
+        private long pointsPerSecond = 0;
+        /**
+         * 每秒字节数(按行协议长度计算)，0为不限制
+         */
+        private long bytesPerSecond = 0;
+        /**
+         * 令牌桶容量，以秒数计，即空闲后允许的突发量为该秒数内的额度，应不小于单个批次
+         */
+        private double burst = 1.0;
+
+        public boolean isLimited() {
+            return pointsPerSecond > 0 || bytesPerSecond > 0;
+        }
+
+        public long getPointsPerSecond() {
+            return this.pointsPerSecond;
+        }
+
+        public long getBytesPerSecond() {
+            return this.bytesPerSecond;
+        }
+
+        public double getBurst() {
+            return this.burst;
+        }
+
+        public void setPointsPerSecond(long pointsPerSecond) {
+            this.pointsPerSecond = pointsPerSecond;
+        }
+
+        public void setBytesPerSecond(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        public void setBurst(double burst) {
+            this.burst = burst;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.Limit(pointsPerSecond=" + this.getPointsPerSecond() + ", bytesPerSecond=" + this.getBytesPerSecond() + ", burst=" + this.getBurst() + ")";
+        }
+    }
+
+    /**
+     * series基数保护配置
+     */
+    public static class Cardinality {
+
+        /**
+         * 是否开启series基数保护
+         */
+        private boolean enabled = false;
+        /**
+         * HyperLogLog精度，每个估算占用约 2^precision * 0.8 字节，标准误差约 1.04 / sqrt(2^precision)
+         */
+        private int precision = 12;
+        /**
+         * 每张表的series数阈值，0为不限制
+         */
+        private long maxSeries = 100000;
+        /**
+         * 每个tag key的不同值个数阈值，0为不限制
+         */
+        private long maxTagValues = 10000;
+        /**
+         * 超出阈值时的处理方式 WARN/DROP_TAG/REJECT
+         */
+        private CardinalityAction action = CardinalityAction.WARN;
+        /**
+         * 统计窗口(毫秒)，每张表的统计在窗口到期后重新开始，超限后的处理随之解除，0为不重置
+         */
+        private long window = 0;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public int getPrecision() {
+            return this.precision;
+        }
+
+        public long getMaxSeries() {
+            return this.maxSeries;
+        }
+
+        public long getMaxTagValues() {
+            return this.maxTagValues;
+        }
+
+        public CardinalityAction getAction() {
+            return this.action;
+        }
+
+        public long getWindow() {
+            return this.window;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setPrecision(int precision) {
+            this.precision = precision;
+        }
+
+        public void setMaxSeries(long maxSeries) {
+            this.maxSeries = maxSeries;
+        }
+
+        public void setMaxTagValues(long maxTagValues) {
+            this.maxTagValues = maxTagValues;
+        }
+
+        public void setAction(CardinalityAction action) {
+            this.action = action;
+        }
+
+        public void setWindow(long window) {
+            this.window = window;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.Cardinality(enabled=" + this.isEnabled() + ", precision=" + this.getPrecision() + ", maxSeries=" + this.getMaxSeries() + ", maxTagValues=" + this.getMaxTagValues() + ", action=" + this.getAction() + ", window=" + this.getWindow() + ")";
+        }
+    }
+
+    /**
+     * 多副本竞速读取配置
+     */
+    public static class Replicas {
+
+        /**
+         * 与 open-url 数据相同的其它副本地址，账号密码与主连接相同，配置后只读查询在主连接及副本间分发
+         */
+        private List<String> urls = new ArrayList<>();
+        /**
+         * 是否在超过等待时间后向另一副本发出重复查询，关闭时只做轮询及失败转移
+         */
+        private boolean hedge = true;
+        /**
+         * 等待时间取最近查询耗时的该分位数
+         */
+        private double hedgePercentile = 95;
+        /**
+         * 最短等待时间(毫秒)
+         */
+        private long minHedgeDelay = 5;
+        /**
+         * 样本不足时的等待时间(毫秒)
+         */
+        private long initialHedgeDelay = 100;
+        /**
+         * 计算分位数的最近查询次数
+         */
+        private int latencyWindow = 1000;
+        /**
+         * 读取线程数上限，即同时在途的副本查询数，超出时排队等待
+         */
+        private int maxThreads = 32;
+
+        public List<String> getUrls() {
+            return this.urls;
+        }
+
+        public boolean isHedge() {
+            return this.hedge;
+        }
+
+        public double getHedgePercentile() {
+            return this.hedgePercentile;
+        }
+
+        public long getMinHedgeDelay() {
+            return this.minHedgeDelay;
+        }
+
+        public long getInitialHedgeDelay() {
+            return this.initialHedgeDelay;
+        }
+
+        public int getLatencyWindow() {
+            return this.latencyWindow;
+        }
+
+        public int getMaxThreads() {
+            return this.maxThreads;
+        }
+
+        public void setUrls(List<String> urls) {
+            this.urls = urls;
+        }
+
+        public void setHedge(boolean hedge) {
+            this.hedge = hedge;
+        }
+
+        public void setHedgePercentile(double hedgePercentile) {
+            this.hedgePercentile = hedgePercentile;
+        }
+
+        public void setMinHedgeDelay(long minHedgeDelay) {
+            this.minHedgeDelay = minHedgeDelay;
+        }
+
+        public void setInitialHedgeDelay(long initialHedgeDelay) {
+            this.initialHedgeDelay = initialHedgeDelay;
+        }
+
+        public void setLatencyWindow(int latencyWindow) {
+            this.latencyWindow = latencyWindow;
+        }
+
+        public void setMaxThreads(int maxThreads) {
+            this.maxThreads = maxThreads;
+        }
+
+        public String toString() {
+            return "InfluxDbProperties.Replicas(urls=" + this.getUrls() + ", hedge=" + this.isHedge() + ", hedgePercentile=" + this.getHedgePercentile() + ", minHedgeDelay=" + this.getMinHedgeDelay() + ", initialHedgeDelay=" + this.getInitialHedgeDelay() + ", latencyWindow=" + this.getLatencyWindow() + ", maxThreads=" + this.getMaxThreads() + ")";
+        }
+    }
 }
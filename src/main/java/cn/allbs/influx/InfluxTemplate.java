@@ -1,9 +1,21 @@
 package cn.allbs.influx;
 
+import cn.allbs.influx.cardinality.CardinalityMetrics;
+import cn.allbs.influx.exception.InfluxdbException;
+import cn.allbs.influx.page.QueryPage;
+import cn.allbs.influx.recovery.RecoveryMetrics;
+import cn.allbs.influx.replica.HedgeMetrics;
+import cn.allbs.influx.transfer.TransferProgress;
+import cn.allbs.influx.transfer.TransferResult;
+import cn.allbs.influx.write.ColumnarPoints;
+import cn.allbs.influx.write.RateLimitMetrics;
+import cn.allbs.influx.write.WritePriority;
 import org.influxdb.InfluxDB;
 import org.influxdb.dto.BatchPoints;
 import org.influxdb.dto.QueryResult;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
@@ -12,6 +24,8 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * 功能:
+ * <p>
+ * 1.0之后新增的方法均为default方法，自定义实现及mock无需全部实现，未覆盖时抛出 {@link InfluxdbException} 或退化为同步写入等基础行为
  *
  * @author ChenQi
  * @version 1.0
@@ -37,6 +51,12 @@ public interface InfluxTemplate {
      */
     void createRetentionPolicy(String policyName, String duration, int replication, boolean isDefault);
 
+    /**
+     * 按配置创建降采样层的保留策略及连续查询，默认不做处理
+     */
+    default void createRollups() {
+    }
+
     /**
      * 创建数据库
      *
@@ -69,6 +89,31 @@ public interface InfluxTemplate {
      */
     List<Map<String, Object>> queryMapList(String command, String dateTimeFormatter);
 
+    /**
+     * 按时间游标分页查询 默认时间格式化为yyyy-MM-dd HH:mm:ss
+     *
+     * @param command  sql语句，不含LIMIT/OFFSET，不能按tag分组
+     * @param pageSize 每页行数
+     * @param cursor   上一页返回的游标，第一页为null
+     * @return 分页结果
+     */
+    default QueryPage queryPage(String command, int pageSize, String cursor) {
+        return queryPage(command, pageSize, cursor, "yyyy-MM-dd HH:mm:ss");
+    }
+
+    /**
+     * 按时间游标分页查询
+     *
+     * @param command           sql语句，不含LIMIT/OFFSET，不能按tag分组
+     * @param pageSize          每页行数
+     * @param cursor            上一页返回的游标，第一页为null
+     * @param dateTimeFormatter 时间格式化
+     * @return 分页结果
+     */
+    default QueryPage queryPage(String command, int pageSize, String cursor, String dateTimeFormatter) {
+        throw new InfluxdbException("queryPage is not supported by " + getClass().getName());
+    }
+
     /**
      * 读取相关数据并转为list
      *
@@ -77,6 +122,29 @@ public interface InfluxTemplate {
      */
     <T> List<T> queryBeanList(String command, Class<T> targetType);
 
+    /**
+     * 查询series的最新数据点，启用最新值内存索引时优先从内存读取
+     *
+     * @param measurement 表名
+     * @param tags        tag set
+     * @return 最新数据点，无数据时返回null
+     */
+    default Map<String, Object> latest(String measurement, Map<String, String> tags) {
+        throw new InfluxdbException("latest is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 查询series在最近一段时间内的数据点，启用最新值内存索引时优先从内存读取
+     *
+     * @param measurement 表名
+     * @param tags        tag set
+     * @param window      时间段
+     * @return 数据点，按时间倒序
+     */
+    default List<Map<String, Object>> recent(String measurement, Map<String, String> tags, Duration window) {
+        throw new InfluxdbException("recent is not supported by " + getClass().getName());
+    }
+
     /**
      * 插入数据库 默认时区为当前系统所在的时区
      *
@@ -178,6 +246,185 @@ public interface InfluxTemplate {
      */
     void batchInsert(BatchPoints batchPoints);
 
+    /**
+     * 按优先级插入，当前时间为时间戳，开启分优先级写入时异步发送，默认同步写入
+     *
+     * @param priority    优先级
+     * @param measurement 表名
+     * @param tags        tag
+     * @param fields      field
+     */
+    default void insert(WritePriority priority, String measurement, Map<String, String> tags, Map<String, Object> fields) {
+        insert(measurement, tags, fields);
+    }
+
+    /**
+     * 按优先级多库多表多条数据插入，开启分优先级写入时异步发送，默认同步写入
+     *
+     * @param priority    优先级
+     * @param batchPoints 多条插入数据
+     */
+    default void batchInsert(WritePriority priority, BatchPoints batchPoints) {
+        batchInsert(batchPoints);
+    }
+
+    /**
+     * 单个series的列式写入，每批1MB
+     *
+     * @param measurement 表名
+     * @param tags        tag
+     * @param times       时间戳
+     * @param timeUnit    时间戳的单位
+     * @param fields      字段名到与时间戳同长度的值
+     * @return 写入的采样数
+     */
+    default long writeColumns(String measurement, Map<String, String> tags, long[] times, TimeUnit timeUnit, Map<String, double[]> fields) {
+        ColumnarPoints points = ColumnarPoints.of(measurement, tags, times, timeUnit);
+        fields.forEach(points::field);
+        return writeColumns(points);
+    }
+
+    /**
+     * 单个series的列式写入，每批1MB
+     *
+     * @param points 列式数据
+     * @return 写入的采样数
+     */
+    default long writeColumns(ColumnarPoints points) {
+        throw new InfluxdbException("writeColumns is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 单个series的列式写入，直接编码为行协议并按字节数切分批次
+     *
+     * @param points     列式数据
+     * @param batchBytes 每批次字节数上限
+     * @return 写入的采样数
+     */
+    default long writeColumns(ColumnarPoints points, int batchBytes) {
+        throw new InfluxdbException("writeColumns is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 导出整张表为行协议文件，目标文件以.gz结尾时压缩
+     *
+     * @param measurement 表名
+     * @param target      目标文件
+     * @param progress    进度回调，可为null
+     * @return {@link TransferResult}
+     */
+    default TransferResult exportMeasurement(String measurement, Path target, TransferProgress progress) {
+        throw new InfluxdbException("exportMeasurement is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 分块查询并导出为行协议文件，目标文件以.gz结尾时压缩
+     *
+     * @param command   sql语句
+     * @param target    目标文件
+     * @param chunkSize 每块行数
+     * @param progress  进度回调，可为null
+     * @return {@link TransferResult}
+     */
+    default TransferResult exportQuery(String command, Path target, int chunkSize, TransferProgress progress) {
+        throw new InfluxdbException("exportQuery is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 导入行协议文件(gzip自动识别)
+     *
+     * @param source   源文件
+     * @param progress 进度回调，可为null
+     * @return {@link TransferResult}
+     */
+    default TransferResult importLineProtocol(Path source, TransferProgress progress) {
+        throw new InfluxdbException("importLineProtocol is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 导入行协议文件(gzip自动识别)
+     *
+     * @param source      源文件
+     * @param batchBytes  每批次字节数上限
+     * @param concurrency 并发写入数
+     * @param progress    进度回调，可为null
+     * @return {@link TransferResult}
+     */
+    default TransferResult importLineProtocol(Path source, int batchBytes, int concurrency, TransferProgress progress) {
+        throw new InfluxdbException("importLineProtocol is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 批量写入失败恢复的统计指标
+     *
+     * @return {@link RecoveryMetrics}
+     */
+    default RecoveryMetrics recoveryMetrics() {
+        throw new InfluxdbException("recoveryMetrics is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 写入速率限制的统计指标
+     *
+     * @return {@link RateLimitMetrics}
+     */
+    default RateLimitMetrics rateLimitMetrics() {
+        throw new InfluxdbException("rateLimitMetrics is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 开启series基数保护后各表的series数估算值
+     *
+     * @return key为表名
+     */
+    default Map<String, Long> seriesCardinality() {
+        throw new InfluxdbException("seriesCardinality is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 开启series基数保护后表中各tag key的不同值个数估算值
+     *
+     * @param measurement 表名
+     * @return key为tag key
+     */
+    default Map<String, Long> tagCardinality(String measurement) {
+        throw new InfluxdbException("tagCardinality is not supported by " + getClass().getName());
+    }
+
+    /**
+     * series基数保护的统计指标
+     *
+     * @return {@link CardinalityMetrics}
+     */
+    default CardinalityMetrics cardinalityMetrics() {
+        throw new InfluxdbException("cardinalityMetrics is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 清除表的series基数统计，之后重新估算，超限后的处理随之解除
+     *
+     * @param measurement 表名
+     */
+    default void resetCardinality(String measurement) {
+        throw new InfluxdbException("resetCardinality is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 清除所有表的series基数统计
+     */
+    default void resetCardinality() {
+        throw new InfluxdbException("resetCardinality is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 多副本竞速读取的统计指标
+     *
+     * @return {@link HedgeMetrics}
+     */
+    default HedgeMetrics hedgeMetrics() {
+        throw new InfluxdbException("hedgeMetrics is not supported by " + getClass().getName());
+    }
+
     /**
      * 批量操作结束时手动刷新数据
      */
@@ -201,4 +448,19 @@ public interface InfluxTemplate {
     boolean ping();
 
     void reConnect();
+
+    /**
+     * 是否已完成初始化，异步初始化完成前为false，默认为true
+     *
+     * @return boolean
+     */
+    default boolean isReady() {
+        return true;
+    }
+
+    /**
+     * 关闭连接并释放资源，默认不做处理
+     */
+    default void close() {
+    }
 }
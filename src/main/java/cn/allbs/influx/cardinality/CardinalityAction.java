@@ -0,0 +1,24 @@
+package cn.allbs.influx.cardinality;
+
+/**
+ * series基数超出阈值时的处理方式
+ *
+ * @author ChenQi
+ */
+public enum CardinalityAction {
+
+    /**
+     * 仅记录告警日志
+     */
+    WARN,
+
+    /**
+     * 去除超限的tag后写入，超出表的series阈值时去除该表基数最高的tag
+     */
+    DROP_TAG,
+
+    /**
+     * 丢弃数据点并计数
+     */
+    REJECT
+}
@@ -0,0 +1,278 @@
+package cn.allbs.influx.cardinality;
+
+import cn.allbs.influx.InfluxDbProperties;
+import cn.allbs.influx.util.LineProtocol;
+import cn.allbs.influx.write.EncodedBatch;
+import org.influxdb.dto.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * series基数保护
+ * <p>
+ * 每张表以一个 {@link HyperLogLog} 估算series数，每个tag key以一个估算不同tag value数，内存与写入量无关。
+ * 超出阈值时按配置告警、去除tag或丢弃数据点。HyperLogLog无法判断某个值是否出现过，
+ * 因此丢弃时另以 {@link SeriesFilter} 记录已写入的series，表超限后只丢弃新series的数据点；
+ * tag超限后丢弃及去除tag对带该tag的所有数据点生效。统计在 window 到期或调用 {@link #reset(String)} 后重新开始，
+ * 估算值统计的是尝试写入的数据。
+ *
+ * @author ChenQi
+ */
+public class CardinalityGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(CardinalityGuard.class);
+
+    private final int precision;
+
+    private final long maxSeries;
+
+    private final long maxTagValues;
+
+    private final CardinalityAction action;
+
+    private final long window;
+
+    private final ConcurrentMap<String, MeasurementSketch> measurements = new ConcurrentHashMap<>();
+
+    private final CardinalityMetrics metrics = new CardinalityMetrics();
+
+    public CardinalityGuard(InfluxDbProperties.Cardinality cardinality) {
+        this.precision = cardinality.getPrecision();
+        this.maxSeries = cardinality.getMaxSeries();
+        this.maxTagValues = cardinality.getMaxTagValues();
+        this.action = cardinality.getAction();
+        this.window = cardinality.getWindow();
+    }
+
+    /**
+     * 记录批次中的series并按阈值处理
+     *
+     * @param batch 已编码的批量数据
+     * @return 处理后的数据，全部被丢弃时返回null
+     */
+    public EncodedBatch check(EncodedBatch batch) {
+        List<EncodedBatch.Entry> points = batch.getEntries();
+        List<EncodedBatch.Entry> checked = new ArrayList<>(points.size());
+        boolean changed = false;
+        for (EncodedBatch.Entry point : points) {
+            EncodedBatch.Entry result = check(batch, point);
+            changed |= result != point;
+            if (result != null) {
+                checked.add(result);
+            }
+        }
+        if (!changed) {
+            return batch;
+        }
+        return checked.isEmpty() ? null : batch.with(checked);
+    }
+
+    /**
+     * 各表的series数估算值
+     *
+     * @return key为表名
+     */
+    public Map<String, Long> seriesCardinality() {
+        Map<String, Long> result = new TreeMap<>();
+        measurements.forEach((k, v) -> result.put(k, v.series.estimate()));
+        return result;
+    }
+
+    /**
+     * 表中各tag key的不同值个数估算值
+     *
+     * @param measurement 表名
+     * @return key为tag key
+     */
+    public Map<String, Long> tagCardinality(String measurement) {
+        MeasurementSketch sketch = measurements.get(measurement);
+        if (sketch == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> result = new TreeMap<>();
+        sketch.tags.forEach((k, v) -> result.put(k, v.estimate()));
+        return result;
+    }
+
+    /**
+     * 清除表的统计，之后重新估算，超限后的处理随之解除
+     *
+     * @param measurement 表名
+     */
+    public void reset(String measurement) {
+        measurements.remove(measurement);
+    }
+
+    /**
+     * 清除所有表的统计
+     */
+    public void reset() {
+        measurements.clear();
+    }
+
+    /**
+     * 统计指标
+     *
+     * @return {@link CardinalityMetrics}
+     */
+    public CardinalityMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 记录单个series并按阈值处理，用于不经过 {@link Point} 的写入
+     *
+     * @param measurement 表名
+     * @param tags        tag set
+     * @param points      数据点数，用于统计
+     * @return 处理后的tag set，未变化时返回原对象，丢弃时返回null
+     */
+    public Map<String, String> checkSeries(String measurement, Map<String, String> tags, int points) {
+        Map<String, String> present = new TreeMap<>();
+        if (tags != null) {
+            tags.forEach((k, v) -> {
+                if (v != null && !v.isEmpty()) {
+                    present.put(k, v);
+                }
+            });
+        }
+        Map<String, String> result = guard(measurement, LineProtocol.seriesKey(measurement, present), present, points);
+        return result == present ? tags : result;
+    }
+
+    private EncodedBatch.Entry check(EncodedBatch batch, EncodedBatch.Entry point) {
+        if (!point.isValid()) {
+            return point;
+        }
+        String seriesKey = point.getSeriesKey();
+        String measurement = point.getMeasurement();
+        Map<String, String> tags = LineProtocol.tags(seriesKey);
+        Map<String, String> kept = guard(measurement, seriesKey, tags, 1);
+        if (kept == tags) {
+            return point;
+        }
+        if (kept == null) {
+            return null;
+        }
+        Point.Builder builder = Point.measurement(measurement).tag(kept).fields(point.getFields());
+        if (point.hasTime()) {
+            builder.time(point.getTime(), batch.getPrecision());
+        }
+        return batch.entry(builder.build());
+    }
+
+    /**
+     * @return 未变化时返回原tag set，去除tag时返回新的tag set，丢弃时返回null
+     */
+    private Map<String, String> guard(String measurement, String seriesKey, Map<String, String> tags, int points) {
+        MeasurementSketch sketch = sketch(measurement);
+        boolean seriesChanged = sketch.series.offer(seriesKey);
+        String widest = null;
+        long widestValues = -1;
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            HyperLogLog values = sketch.tag(tag.getKey());
+            boolean changed = values.offer(tag.getValue());
+            long estimate = values.estimate();
+            if (estimate > widestValues) {
+                widest = tag.getKey();
+                widestValues = estimate;
+            }
+            // 估算值只在寄存器变化时增加，未变化时无需比较阈值
+            if (changed && maxTagValues > 0 && estimate > maxTagValues && sketch.exceededTags.add(tag.getKey())) {
+                metrics.exceeded();
+                log.warn("allbs-influx warning! tag [{}] of measurement [{}] has about {} values, exceeding {}", tag.getKey(), measurement, estimate, maxTagValues);
+                if (action == CardinalityAction.DROP_TAG) {
+                    sketch.droppedTags.add(tag.getKey());
+                }
+            }
+        }
+        long series = seriesChanged ? sketch.series.estimate() : 0;
+        if (seriesChanged && maxSeries > 0 && series > maxSeries && sketch.seriesExceeded.compareAndSet(false, true)) {
+            metrics.exceeded();
+            log.warn("allbs-influx warning! measurement [{}] has about {} series, exceeding {}", measurement, series, maxSeries);
+            if (action == CardinalityAction.DROP_TAG && widest != null) {
+                sketch.droppedTags.add(widest);
+                log.warn("allbs-influx warning! tag [{}] of measurement [{}] will be dropped", widest, measurement);
+            }
+        }
+        if (action == CardinalityAction.REJECT) {
+            // 表超限后已写入过的series照常写入，只丢弃新series
+            if (containsAny(sketch.exceededTags, tags) || sketch.seriesExceeded.get() && !sketch.written.mightContain(seriesKey)) {
+                metrics.rejected(points);
+                return null;
+            }
+            if (sketch.written != null) {
+                sketch.written.put(seriesKey);
+            }
+        }
+        if (action == CardinalityAction.DROP_TAG && containsAny(sketch.droppedTags, tags)) {
+            metrics.droppedTag(points);
+            Map<String, String> kept = new LinkedHashMap<>(tags);
+            kept.keySet().removeAll(sketch.droppedTags);
+            return kept;
+        }
+        return tags;
+    }
+
+    private MeasurementSketch sketch(String measurement) {
+        MeasurementSketch sketch = measurements.get(measurement);
+        if (sketch == null) {
+            return measurements.computeIfAbsent(measurement, k -> new MeasurementSketch());
+        }
+        if (window > 0 && System.currentTimeMillis() - sketch.created >= window) {
+            return measurements.compute(measurement, (k, v) -> v == null || v == sketch ? new MeasurementSketch() : v);
+        }
+        return sketch;
+    }
+
+    private static boolean containsAny(Set<String> keys, Map<String, String> tags) {
+        if (keys.isEmpty()) {
+            return false;
+        }
+        for (String key : tags.keySet()) {
+            if (keys.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class MeasurementSketch {
+
+        private final long created = System.currentTimeMillis();
+
+        private final HyperLogLog series = new HyperLogLog(precision);
+
+        /**
+         * 已写入的series，仅丢弃模式下设置了series阈值时创建
+         */
+        private final SeriesFilter written = action == CardinalityAction.REJECT && maxSeries > 0 ? new SeriesFilter(maxSeries) : null;
+
+        private final ConcurrentMap<String, HyperLogLog> tags = new ConcurrentHashMap<>();
+
+        private final AtomicBoolean seriesExceeded = new AtomicBoolean();
+
+        private final Set<String> exceededTags = ConcurrentHashMap.newKeySet();
+
+        private final Set<String> droppedTags = ConcurrentHashMap.newKeySet();
+
+        private HyperLogLog tag(String key) {
+            HyperLogLog sketch = tags.get(key);
+            if (sketch == null) {
+                sketch = tags.computeIfAbsent(key, k -> new HyperLogLog(precision));
+            }
+            return sketch;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package cn.allbs.influx.cardinality;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * series基数保护的统计指标
+ *
+ * @author ChenQi
+ */
+public class CardinalityMetrics {
+
+    /**
+     * 表或tag首次超出阈值的次数
+     */
+    private final LongAdder exceeded = new LongAdder();
+    /**
+     * 被去除tag的数据点数
+     */
+    private final LongAdder droppedTagPoints = new LongAdder();
+    /**
+     * 被丢弃的数据点数
+     */
+    private final LongAdder rejectedPoints = new LongAdder();
+
+    void exceeded() {
+        exceeded.increment();
+    }
+
+    void droppedTag(int points) {
+        droppedTagPoints.add(points);
+    }
+
+    void rejected(int points) {
+        rejectedPoints.add(points);
+    }
+
+    public long getExceeded() {
+        return exceeded.sum();
+    }
+
+    public long getDroppedTagPoints() {
+        return droppedTagPoints.sum();
+    }
+
+    public long getRejectedPoints() {
+        return rejectedPoints.sum();
+    }
+
+    public String toString() {
+        return "CardinalityMetrics(exceeded=" + this.getExceeded() + ", droppedTagPoints=" + this.getDroppedTagPoints() + ", rejectedPoints=" + this.getRejectedPoints() + ")";
+    }
+}
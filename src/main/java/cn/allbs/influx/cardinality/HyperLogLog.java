@@ -0,0 +1,130 @@
+package cn.allbs.influx.cardinality;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基数估算
+ * <p>
+ * 2^precision 个6位寄存器，每5个打包在一个int中，以CAS更新，内存固定为 2^precision * 0.8 字节左右，
+ * 标准误差约为 1.04 / sqrt(2^precision)。寄存器变化时增量更新调和和(定点数)及零寄存器个数，
+ * 写入及读取估算值都不需要遍历寄存器，并发写入时估算值不会停留在旧值。
+ *
+ * @author ChenQi
+ */
+public class HyperLogLog {
+
+    private static final int REGISTER_BITS = 6;
+
+    private static final int REGISTERS_PER_WORD = 5;
+
+    private static final int REGISTER_MASK = (1 << REGISTER_BITS) - 1;
+
+    /**
+     * 调和和的定点小数位数，2^16个寄存器全为0时为2^62，不会溢出
+     */
+    private static final int SCALE_BITS = 46;
+
+    private final int precision;
+
+    private final int size;
+
+    private final AtomicIntegerArray words;
+
+    /**
+     * sum(2^-register)，定点数
+     */
+    private final AtomicLong sum;
+
+    private final AtomicInteger zeros;
+
+    /**
+     * @param precision 精度，4至16
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 16: " + precision);
+        }
+        this.precision = precision;
+        this.size = 1 << precision;
+        this.words = new AtomicIntegerArray((size + REGISTERS_PER_WORD - 1) / REGISTERS_PER_WORD);
+        this.sum = new AtomicLong((long) size << SCALE_BITS);
+        this.zeros = new AtomicInteger(size);
+    }
+
+    /**
+     * 记录一个值
+     *
+     * @param value 值
+     * @return 估算值是否发生变化
+     */
+    public boolean offer(CharSequence value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        int word = index / REGISTERS_PER_WORD;
+        int shift = (index % REGISTERS_PER_WORD) * REGISTER_BITS;
+        for (; ; ) {
+            int current = words.get(word);
+            int previous = (current >>> shift) & REGISTER_MASK;
+            if (previous >= rank) {
+                return false;
+            }
+            int next = (current & ~(REGISTER_MASK << shift)) | (rank << shift);
+            if (words.compareAndSet(word, current, next)) {
+                sum.addAndGet(weight(rank) - weight(previous));
+                if (previous == 0) {
+                    zeros.decrementAndGet();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 当前估算值
+     *
+     * @return 不同值的个数
+     */
+    public long estimate() {
+        double harmonic = (double) sum.get() / (1L << SCALE_BITS);
+        int empty = zeros.get();
+        double alpha = 0.7213 / (1 + 1.079 / size);
+        double raw = alpha * size * size / harmonic;
+        if (raw <= 2.5 * size && empty > 0) {
+            return Math.round(size * Math.log((double) size / empty));
+        }
+        return Math.round(raw);
+    }
+
+    /**
+     * 占用的内存字节数
+     *
+     * @return 字节数
+     */
+    public int memoryBytes() {
+        return words.length() * Integer.BYTES;
+    }
+
+    private static long weight(int register) {
+        return register > SCALE_BITS ? 0 : 1L << (SCALE_BITS - register);
+    }
+
+    /**
+     * FNV-1a 后再经 MurmurHash3 的 fmix64 打散
+     */
+    static long hash(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb1a3a1a3c4ebL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
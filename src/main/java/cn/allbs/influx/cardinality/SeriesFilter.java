@@ -0,0 +1,67 @@
+package cn.allbs.influx.cardinality;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 已写入series的布隆过滤器
+ * <p>
+ * 按阈值以每个series 10 bit、7次哈希分配，容量内误判率约1%，误判只会把新series当作已有series放行，
+ * 不会把已有series当作新series拒绝。位数组以CAS无锁置位。
+ *
+ * @author ChenQi
+ */
+class SeriesFilter {
+
+    private static final int BITS_PER_SERIES = 10;
+
+    private static final int HASHES = 7;
+
+    private final AtomicLongArray words;
+
+    private final long bits;
+
+    SeriesFilter(long expected) {
+        long words = Math.min(Integer.MAX_VALUE - 8, Math.max(1, (expected * BITS_PER_SERIES + 63) >>> 6));
+        this.words = new AtomicLongArray((int) words);
+        this.bits = words << 6;
+    }
+
+    /**
+     * 记录series
+     *
+     * @param seriesKey series key
+     */
+    void put(CharSequence seriesKey) {
+        long hash = HyperLogLog.hash(seriesKey);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bits;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+                word = words.get(index);
+            }
+        }
+    }
+
+    /**
+     * series是否可能已记录
+     *
+     * @param seriesKey series key
+     * @return 未记录过时一定返回false
+     */
+    boolean mightContain(CharSequence seriesKey) {
+        long hash = HyperLogLog.hash(seriesKey);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bits;
+            if ((words.get((int) (bit >>> 6)) & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
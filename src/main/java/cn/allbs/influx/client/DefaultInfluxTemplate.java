@@ -3,11 +3,21 @@ package cn.allbs.influx.client;
 import cn.allbs.influx.InfluxDbClient;
 import cn.allbs.influx.InfluxDbProperties;
 import cn.allbs.influx.exception.InfluxdbException;
+import cn.allbs.influx.replica.CallTracker;
+import cn.allbs.influx.replica.HedgedReader;
+import cn.allbs.influx.util.NamedThreadFactory;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import org.influxdb.BatchOptions;
 import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDBFactory;
 import org.slf4j.Logger;
 
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * 功能:
  *
@@ -27,7 +37,7 @@ public class DefaultInfluxTemplate extends InfluxDbClient {
     public InfluxDB buildInfluxDb() {
         if (influxdb == null) {
             try {
-                influxdb = InfluxDBFactory.connect(influxDbProperties.getOpenUrl(), influxDbProperties.getUsername(), influxDbProperties.getPassword());
+                influxdb = InfluxDBFactory.connect(influxDbProperties.getOpenUrl(), influxDbProperties.getUsername(), influxDbProperties.getPassword(), httpClient(), influxDbProperties.getResponseFormat());
                 createDatabase(this.database);
                 influxdb.setDatabase(this.database);
                 log.debug("init influxDb, current configuration is {}", influxDbProperties);
@@ -40,4 +50,47 @@ public class DefaultInfluxTemplate extends InfluxDbClient {
         }
         return influxdb;
     }
+
+    /**
+     * 连接只读副本，副本不可用时查询会转向其它副本
+     */
+    @Override
+    protected void connectReplicas() {
+        InfluxDbProperties.Replicas replicas = influxDbProperties.getReplicas();
+        if (replicas.getUrls().isEmpty()) {
+            return;
+        }
+        if (hedgedReader != null) {
+            hedgedReader.close();
+        }
+        hedgedReader = new HedgedReader(influxDbProperties.getName(), replicas, influxDbProperties.getOpenUrl(), influxdb);
+        for (String url : replicas.getUrls()) {
+            InfluxDB replica = InfluxDBFactory.connect(url, influxDbProperties.getUsername(), influxDbProperties.getPassword(), httpClient(), influxDbProperties.getResponseFormat());
+            replica.setDatabase(this.database);
+            hedgedReader.addReplica(url, replica);
+        }
+    }
+
+    /**
+     * 当前连接独占的HTTP连接池及请求线程
+     *
+     * @return OkHttpClient.Builder
+     */
+    protected OkHttpClient.Builder httpClient() {
+        InfluxDbProperties.Http http = influxDbProperties.getHttp();
+        Dispatcher dispatcher = new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new NamedThreadFactory("allbs-influx-" + influxDbProperties.getName() + "-http")));
+        dispatcher.setMaxRequests(http.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(http.getMaxRequests());
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        if (!influxDbProperties.getReplicas().getUrls().isEmpty()) {
+            builder.addInterceptor(new CallTracker());
+        }
+        return builder
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(http.getMaxIdleConnections(), http.getKeepAlive(), TimeUnit.MILLISECONDS))
+                .connectTimeout(http.getConnectTimeout(), TimeUnit.MILLISECONDS)
+                .readTimeout(http.getReadTimeout(), TimeUnit.MILLISECONDS)
+                .writeTimeout(http.getWriteTimeout(), TimeUnit.MILLISECONDS);
+    }
 }
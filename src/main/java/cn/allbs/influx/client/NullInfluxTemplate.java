@@ -18,12 +18,18 @@ public class NullInfluxTemplate extends InfluxDbClient {
 
     @Override
     public InfluxDB buildInfluxDb() {
+        InfluxDbClient influxTemplate = null;
         try {
-            InfluxDbClient influxTemplate = new DefaultInfluxTemplate(influxDbProperties, batchOptions);
-            influxTemplate.createRetentionPolicy();
-            return influxTemplate.buildInfluxDb();
+            influxTemplate = new DefaultInfluxTemplate(influxDbProperties, batchOptions);
+            influxTemplate.bootstrap();
+            takeOver(influxTemplate);
+            return influxdb;
         } catch (Exception e) {
             return null;
+        } finally {
+            if (influxTemplate != null) {
+                influxTemplate.close();
+            }
         }
     }
 }
@@ -0,0 +1,27 @@
+package cn.allbs.influx.health;
+
+import cn.allbs.influx.InfluxTemplate;
+import org.springframework.boot.actuate.health.CompositeHealthContributor;
+import org.springframework.boot.actuate.health.HealthContributor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * 功能: 存在 spring-boot-actuator 时注册 InfluxDB 健康检查，每个template(含命名连接)一项
+ *
+ * @author ChenQi
+ */
+@Configuration
+@ConditionalOnClass(name = "org.springframework.boot.actuate.health.HealthIndicator")
+public class InfluxDbHealthConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(name = "influxHealthContributor")
+    public HealthContributor influxHealthContributor(Map<String, InfluxTemplate> influxTemplates) {
+        return CompositeHealthContributor.fromMap(influxTemplates, InfluxDbHealthIndicator::new);
+    }
+}
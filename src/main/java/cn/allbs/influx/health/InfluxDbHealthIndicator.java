@@ -0,0 +1,39 @@
+package cn.allbs.influx.health;
+
+import cn.allbs.influx.InfluxDbClient;
+import cn.allbs.influx.InfluxTemplate;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * 功能: InfluxDB 健康检查，异步初始化完成前为 DOWN 并给出失败原因及缓存的写入批次数
+ *
+ * @author ChenQi
+ */
+public class InfluxDbHealthIndicator extends AbstractHealthIndicator {
+
+    private final InfluxTemplate influxTemplate;
+
+    public InfluxDbHealthIndicator(InfluxTemplate influxTemplate) {
+        super("InfluxDB health check failed");
+        this.influxTemplate = influxTemplate;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        boolean ready = influxTemplate.isReady();
+        builder.withDetail("ready", ready);
+        if (influxTemplate instanceof InfluxDbClient) {
+            InfluxDbClient client = (InfluxDbClient) influxTemplate;
+            builder.withDetail("pendingWrites", client.getPendingWrites());
+            if (client.getBootstrapError() != null) {
+                builder.withDetail("error", client.getBootstrapError());
+            }
+        }
+        if (ready && influxTemplate.ping()) {
+            builder.up();
+        } else {
+            builder.down();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package cn.allbs.influx.latest;
+
+import cn.allbs.influx.write.EncodedBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 最新值内存索引
+ * <p>
+ * 写入时同步记录每个series最近N个数据点，内存占用超出上限时淘汰最久未访问的series。
+ * series按key分段存放，查找及淘汰只锁所在分段，读写数据点只锁对应的series；淘汰时各分段轮流淘汰其中最久未访问的series，
+ * 因此淘汰顺序为近似LRU。仅当所有写入都经过当前客户端时，内存中的数据才与库中一致。
+ *
+ * @author ChenQi
+ */
+public class LatestValueStore {
+
+    /**
+     * 返回结果中时间戳(纳秒)的key
+     */
+    public static final String TIME = "time";
+
+    /**
+     * 分段数，须为2的幂
+     */
+    private static final int SEGMENTS = 16;
+
+    private final int pointsPerSeries;
+
+    private final long maxMemoryBytes;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final AtomicInteger evictCursor = new AtomicInteger();
+
+    private final AtomicLong memoryBytes = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public LatestValueStore(int pointsPerSeries, long maxMemoryBytes) {
+        this.pointsPerSeries = pointsPerSeries;
+        this.maxMemoryBytes = maxMemoryBytes;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * 记录数据点
+     *
+     * @param seriesKey series key
+     * @param timeNanos 纳秒时间戳
+     * @param fields    field set
+     */
+    public void record(String seriesKey, long timeNanos, Map<String, Object> fields) {
+        Segment segment = segment(seriesKey);
+        SeriesRing ring;
+        synchronized (segment) {
+            ring = segment.series.get(seriesKey);
+            if (ring == null) {
+                ring = new SeriesRing(pointsPerSeries);
+                segment.series.put(seriesKey, ring);
+                ring.charged = ring.footprint() + seriesKey.length() * 2L;
+                memoryBytes.addAndGet(ring.charged);
+            }
+        }
+        long delta = ring.add(timeNanos, fields);
+        if (delta == 0) {
+            return;
+        }
+        long used;
+        synchronized (segment) {
+            // 写入期间该series可能已被淘汰，淘汰时已扣减全部已计入的占用，不再计入
+            if (segment.series.get(seriesKey) != ring) {
+                return;
+            }
+            ring.charged += delta;
+            used = memoryBytes.addAndGet(delta);
+        }
+        if (used > maxMemoryBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * 记录批次中的数据点，未指定时间戳的数据点由服务端赋值，无法记录
+     *
+     * @param batch 已编码的批量数据
+     */
+    public void record(EncodedBatch batch) {
+        TimeUnit precision = batch.getPrecision();
+        for (EncodedBatch.Entry point : batch.getEntries()) {
+            if (point.hasTime()) {
+                record(point.getSeriesKey(), precision.toNanos(point.getTime()), point.getFields());
+            }
+        }
+    }
+
+    /**
+     * 最新的数据点
+     *
+     * @param seriesKey series key
+     * @return 字段及纳秒时间戳，未命中时返回null
+     */
+    public Map<String, Object> latest(String seriesKey) {
+        SeriesRing ring = ring(seriesKey);
+        SeriesRing.Sample sample = ring == null ? null : ring.latest();
+        if (sample == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return toMap(sample);
+    }
+
+    /**
+     * 不早于指定时间的数据点，按时间倒序
+     *
+     * @param seriesKey series key
+     * @param fromNanos 纳秒时间戳
+     * @return 数据点，内存未完整覆盖该时间段时返回null
+     */
+    public List<Map<String, Object>> recent(String seriesKey, long fromNanos) {
+        SeriesRing ring = ring(seriesKey);
+        List<SeriesRing.Sample> samples = ring == null ? null : ring.since(fromNanos);
+        if (samples == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        List<Map<String, Object>> result = new ArrayList<>(samples.size());
+        samples.forEach(sample -> result.add(toMap(sample)));
+        return result;
+    }
+
+    private SeriesRing ring(String seriesKey) {
+        Segment segment = segment(seriesKey);
+        synchronized (segment) {
+            return segment.series.get(seriesKey);
+        }
+    }
+
+    private Segment segment(String seriesKey) {
+        int hash = seriesKey.hashCode();
+        return segments[(hash ^ hash >>> 16) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * 各分段轮流淘汰最久未访问的series，直至内存占用不超过上限或所有分段均为空
+     */
+    private void evict() {
+        int empty = 0;
+        while (memoryBytes.get() > maxMemoryBytes && empty < SEGMENTS) {
+            Segment segment = segments[evictCursor.getAndIncrement() & (SEGMENTS - 1)];
+            synchronized (segment) {
+                Iterator<SeriesRing> iterator = segment.series.values().iterator();
+                if (!iterator.hasNext()) {
+                    empty++;
+                    continue;
+                }
+                SeriesRing eldest = iterator.next();
+                iterator.remove();
+                memoryBytes.addAndGet(-eldest.charged);
+                evictions.increment();
+                empty = 0;
+            }
+        }
+    }
+
+    private static Map<String, Object> toMap(SeriesRing.Sample sample) {
+        Map<String, Object> map = new HashMap<>(sample.fields);
+        map.put(TIME, sample.time);
+        return map;
+    }
+
+    public int getSeriesCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.series.size();
+            }
+        }
+        return count;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * 一个分段，按访问顺序排列
+     */
+    private static final class Segment {
+
+        private final LinkedHashMap<String, SeriesRing> series = new LinkedHashMap<>(64, 0.75f, true);
+    }
+}
@@ -0,0 +1,307 @@
+package cn.allbs.influx.latest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个series最近N个数据点的环形缓冲区
+ * <p>
+ * 时间戳与数值字段使用基本类型数组按列存储，每列以位图记录各时刻是否有值，非数值字段使用对象数组。
+ * 同一字段先后写入不同类型的值时该列按需放宽类型，不会截断已有或新写入的值。
+ * 数据点按时间戳有序存放，乱序到达的数据点插入到对应位置。
+ *
+ * @author ChenQi
+ */
+class SeriesRing {
+
+    private static final int OVERHEAD_BYTES = 64;
+
+    /**
+     * String对象头及数组头估算(字节)
+     */
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    /**
+     * 对象数组中包装类型数值的占用估算(字节)
+     */
+    private static final int BOXED_BYTES = 16;
+
+    private final int capacity;
+
+    private final long[] times;
+
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+
+    private int start;
+
+    private int size;
+
+    /**
+     * 已计入 {@link LatestValueStore} 的内存占用(字节)，由其在锁内读写
+     */
+    long charged;
+
+    SeriesRing(int capacity) {
+        this.capacity = capacity;
+        this.times = new long[capacity];
+    }
+
+    /**
+     * 写入数据点
+     *
+     * @param time   纳秒时间戳
+     * @param fields field set
+     * @return 占用内存的增量(字节)
+     */
+    synchronized long add(long time, Map<String, Object> fields) {
+        long before = footprint();
+        insert(time, fields);
+        return footprint() - before;
+    }
+
+    private void insert(long time, Map<String, Object> fields) {
+        int position = size;
+        while (position > 0 && times[physical(position - 1)] > time) {
+            position--;
+        }
+        if (position > 0 && times[physical(position - 1)] == time) {
+            put(physical(position - 1), fields);
+            return;
+        }
+        if (size == capacity) {
+            if (position == 0) {
+                return;
+            }
+            clear(start);
+            start = (start + 1) % capacity;
+            size--;
+            position--;
+        }
+        for (int i = size; i > position; i--) {
+            move(physical(i - 1), physical(i));
+        }
+        size++;
+        int slot = physical(position);
+        times[slot] = time;
+        clear(slot);
+        put(slot, fields);
+    }
+
+    /**
+     * 最新的数据点
+     *
+     * @return 时间戳及字段，无数据时返回null
+     */
+    synchronized Sample latest() {
+        return size == 0 ? null : sample(physical(size - 1));
+    }
+
+    /**
+     * 不早于指定时间的数据点，按时间倒序
+     *
+     * @param from 纳秒时间戳
+     * @return 数据点，缓冲区未覆盖该时间段(最旧的数据点晚于from)时返回null
+     */
+    synchronized List<Sample> since(long from) {
+        if (size == 0 || times[start] > from) {
+            return null;
+        }
+        List<Sample> samples = new ArrayList<>();
+        for (int i = size - 1; i >= 0 && times[physical(i)] >= from; i--) {
+            samples.add(sample(physical(i)));
+        }
+        return samples;
+    }
+
+    /**
+     * 占用内存估算(字节)
+     */
+    synchronized long footprint() {
+        long bytes = OVERHEAD_BYTES + (long) capacity * 8 * (1 + columns.size());
+        for (Column column : columns.values()) {
+            bytes += column.present.length * 8L + column.objectBytes;
+        }
+        return bytes;
+    }
+
+    private int physical(int logical) {
+        return (start + logical) % capacity;
+    }
+
+    private void put(int slot, Map<String, Object> fields) {
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            if (field.getValue() == null) {
+                continue;
+            }
+            Column column = columns.get(field.getKey());
+            if (column == null) {
+                column = new Column(capacity, field.getValue());
+                columns.put(field.getKey(), column);
+            }
+            column.set(slot, field.getValue());
+        }
+    }
+
+    private void clear(int slot) {
+        for (Column column : columns.values()) {
+            column.clear(slot);
+        }
+    }
+
+    private void move(int from, int to) {
+        times[to] = times[from];
+        for (Column column : columns.values()) {
+            column.move(from, to);
+        }
+    }
+
+    private Sample sample(int slot) {
+        Map<String, Object> fields = new HashMap<>();
+        columns.forEach((name, column) -> {
+            Object value = column.get(slot);
+            if (value != null) {
+                fields.put(name, value);
+            }
+        });
+        return new Sample(times[slot], fields);
+    }
+
+    /**
+     * 数据点快照
+     */
+    static final class Sample {
+
+        final long time;
+
+        final Map<String, Object> fields;
+
+        Sample(long time, Map<String, Object> fields) {
+            this.time = time;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * 单个字段的列，整数与浮点数以long数组存储(浮点数存储其位模式)，是否有值由位图记录，任意值都可存储。
+     * 整数列写入浮点数时整列转为浮点数，数值列写入非数值时整列转为对象数组，已有的值保持不变
+     */
+    private static final class Column {
+
+        private static final int LONG = 0;
+
+        private static final int DOUBLE = 1;
+
+        private static final int OBJECT = 2;
+
+        private final long[] present;
+
+        private int type;
+
+        private long[] values;
+
+        private Object[] objects;
+
+        /**
+         * 对象数组中字符串及包装类型的占用估算(字节)
+         */
+        private long objectBytes;
+
+        private Column(int capacity, Object sample) {
+            this.present = new long[(capacity + 63) >>> 6];
+            this.type = typeOf(sample);
+            if (type == OBJECT) {
+                objects = new Object[capacity];
+            } else {
+                values = new long[capacity];
+            }
+        }
+
+        private void set(int slot, Object value) {
+            int required = typeOf(value);
+            if (required > type) {
+                widen(required);
+            }
+            if (type == LONG) {
+                values[slot] = ((Number) value).longValue();
+            } else if (type == DOUBLE) {
+                values[slot] = Double.doubleToRawLongBits(((Number) value).doubleValue());
+            } else {
+                replace(slot, value);
+            }
+            present[slot >>> 6] |= 1L << slot;
+        }
+
+        private Object get(int slot) {
+            if ((present[slot >>> 6] & 1L << slot) == 0) {
+                return null;
+            }
+            if (type == LONG) {
+                return values[slot];
+            }
+            if (type == DOUBLE) {
+                return Double.longBitsToDouble(values[slot]);
+            }
+            return objects[slot];
+        }
+
+        private void clear(int slot) {
+            present[slot >>> 6] &= ~(1L << slot);
+            if (type == OBJECT) {
+                replace(slot, null);
+            }
+        }
+
+        private void move(int from, int to) {
+            if ((present[from >>> 6] & 1L << from) == 0) {
+                clear(to);
+                return;
+            }
+            if (type == OBJECT) {
+                replace(to, objects[from]);
+            } else {
+                values[to] = values[from];
+            }
+            present[to >>> 6] |= 1L << to;
+        }
+
+        private void widen(int required) {
+            if (required == DOUBLE) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = Double.doubleToRawLongBits(values[i]);
+                }
+            } else {
+                objects = new Object[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    Object value = get(i);
+                    if (value != null) {
+                        replace(i, value);
+                    }
+                }
+                values = null;
+            }
+            type = required;
+        }
+
+        private void replace(int slot, Object value) {
+            objectBytes += bytes(value) - bytes(objects[slot]);
+            objects[slot] = value;
+        }
+
+        private static int typeOf(Object value) {
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return LONG;
+            }
+            return value instanceof Number ? DOUBLE : OBJECT;
+        }
+
+        private static long bytes(Object value) {
+            if (value instanceof String) {
+                return STRING_OVERHEAD_BYTES + ((String) value).length() * 2L;
+            }
+            return value instanceof Number ? BOXED_BYTES : 0;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package cn.allbs.influx.page;
+
+import cn.allbs.influx.exception.InfluxdbException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 分页游标
+ * <p>
+ * 记录上一页最后一行的时间戳(纳秒)及该时间戳下已返回的行数，多个series在同一时间戳有数据时据此跳过已返回的行，
+ * 同时记录查询语句的指纹，防止游标被用于其它查询。对外以base64url编码的字符串传递。
+ *
+ * @author ChenQi
+ */
+public final class KeysetCursor {
+
+    private final long time;
+
+    private final int skip;
+
+    private final int fingerprint;
+
+    KeysetCursor(long time, int skip, int fingerprint) {
+        this.time = time;
+        this.skip = skip;
+        this.fingerprint = fingerprint;
+    }
+
+    public long getTime() {
+        return this.time;
+    }
+
+    public int getSkip() {
+        return this.skip;
+    }
+
+    /**
+     * 编码为字符串
+     *
+     * @return 游标
+     */
+    public String encode() {
+        String raw = time + ":" + skip + ":" + Integer.toHexString(fingerprint);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 解析游标并校验是否属于当前查询
+     *
+     * @param cursor      游标
+     * @param fingerprint 当前查询的指纹
+     * @return 游标
+     */
+    public static KeysetCursor decode(String cursor, int fingerprint) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(":");
+        } catch (IllegalArgumentException e) {
+            throw new InfluxdbException("Invalid InfluxDB page cursor: " + cursor);
+        }
+        if (parts.length != 3) {
+            throw new InfluxdbException("Invalid InfluxDB page cursor: " + cursor);
+        }
+        KeysetCursor result;
+        try {
+            result = new KeysetCursor(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), (int) Long.parseLong(parts[2], 16));
+        } catch (NumberFormatException e) {
+            throw new InfluxdbException("Invalid InfluxDB page cursor: " + cursor);
+        }
+        if (result.fingerprint != fingerprint) {
+            throw new InfluxdbException("InfluxDB page cursor does not belong to this query");
+        }
+        return result;
+    }
+}
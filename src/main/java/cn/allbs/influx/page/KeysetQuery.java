@@ -0,0 +1,241 @@
+package cn.allbs.influx.page;
+
+import cn.allbs.influx.exception.InfluxdbException;
+import cn.allbs.influx.util.InfluxDurations;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按时间游标分页的查询改写
+ * <p>
+ * 将 SELECT 语句拆分为 where 条件前后几部分，每页在 where 中追加 time &gt;= 游标时间(倒序时为 &lt;=)并追加 LIMIT，
+ * 每页只扫描本页数据，不随页码增加变慢。只支持结果为单个series的查询: 只能查询一张表(不能为多表或正则)，不能包含按tag分组、LIMIT、OFFSET等子句，
+ * 可以包含 GROUP BY time() 及 fill()，此时按时间窗口对齐，正序为 time &gt;= 游标时间+窗口，倒序为 time &lt; 游标时间，避免截断窗口。
+ *
+ * @author ChenQi
+ */
+public final class KeysetQuery {
+
+    private static final Pattern SELECT = Pattern.compile("^\\s*SELECT\\s", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern GROUP_BY_TIME = Pattern.compile("GROUP\\s+BY\\s+time\\s*\\(\\s*([^,)\\s]+)[^)]*\\)(\\s+fill\\s*\\([^)]*\\))?\\s*", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern DESC = Pattern.compile("ORDER\\s+BY\\s+time\\s+DESC\\s*", Pattern.CASE_INSENSITIVE);
+
+    private static final String[] UNSUPPORTED = {"LIMIT", "OFFSET", "SLIMIT", "SOFFSET", "INTO"};
+
+    private final String select;
+
+    private final String where;
+
+    private final String rest;
+
+    private final String tz;
+
+    private final boolean descending;
+
+    private final long interval;
+
+    private final int fingerprint;
+
+    private KeysetQuery(String select, String where, String rest, String tz, boolean descending, long interval, int fingerprint) {
+        this.select = select;
+        this.where = where;
+        this.rest = rest;
+        this.tz = tz;
+        this.descending = descending;
+        this.interval = interval;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * 解析查询语句
+     *
+     * @param command sql语句
+     * @return 可分页的查询
+     */
+    public static KeysetQuery parse(String command) {
+        String sql = command.trim();
+        if (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1).trim();
+        }
+        if (!SELECT.matcher(sql).find() || indexOf(sql, ";") >= 0) {
+            throw new InfluxdbException("Only a single SELECT statement can be paginated: " + command);
+        }
+        for (String keyword : UNSUPPORTED) {
+            if (indexOf(sql, keyword) >= 0) {
+                throw new InfluxdbException("Paginated query must not contain " + keyword + ": " + command);
+            }
+        }
+        int from = indexOf(sql, "FROM");
+        int where = indexOf(sql, "WHERE");
+        int group = indexOf(sql, "GROUP");
+        int order = indexOf(sql, "ORDER");
+        int tz = indexOf(sql, "tz");
+        int end = min(group, order, tz, sql.length());
+        if (from < 0 || !isSingleSource(sql.substring(from + "FROM".length(), min(where, end)))) {
+            throw new InfluxdbException("Paginated query must select from a single measurement: " + command);
+        }
+        int tail = tz < 0 ? sql.length() : tz;
+        long interval = 0;
+        if (group >= 0) {
+            Matcher groupBy = GROUP_BY_TIME.matcher(sql.substring(group, min(order, tail)));
+            if (!groupBy.matches()) {
+                throw new InfluxdbException("Paginated query can only be grouped by time(): " + command);
+            }
+            try {
+                interval = InfluxDurations.toNanos(groupBy.group(1));
+            } catch (IllegalArgumentException e) {
+                throw new InfluxdbException("Invalid time() interval in paginated query: " + command);
+            }
+        }
+        boolean descending = order >= 0 && DESC.matcher(sql.substring(order, tail)).matches();
+        return new KeysetQuery(sql.substring(0, where < 0 ? end : where).trim(),
+                where < 0 ? null : sql.substring(where + "WHERE".length(), end).trim(),
+                sql.substring(end, tail).trim(),
+                tz < 0 ? null : sql.substring(tz).trim(),
+                descending,
+                interval,
+                sql.hashCode());
+    }
+
+    /**
+     * 生成一页的查询语句
+     *
+     * @param cursor 游标，第一页为null
+     * @param limit  行数
+     * @return sql语句
+     */
+    public String page(KeysetCursor cursor, int limit) {
+        StringBuilder sb = new StringBuilder(select);
+        String condition = null;
+        if (cursor != null && interval > 0) {
+            condition = descending ? "time < " + cursor.getTime() : "time >= " + (cursor.getTime() + interval);
+        } else if (cursor != null) {
+            condition = "time " + (descending ? "<= " : ">= ") + cursor.getTime();
+        }
+        if (where != null && condition != null) {
+            sb.append(" WHERE (").append(where).append(") AND ").append(condition);
+        } else if (where != null) {
+            sb.append(" WHERE ").append(where);
+        } else if (condition != null) {
+            sb.append(" WHERE ").append(condition);
+        }
+        if (!rest.isEmpty()) {
+            sb.append(' ').append(rest);
+        }
+        sb.append(" LIMIT ").append(limit);
+        if (tz != null) {
+            sb.append(' ').append(tz);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解析游标并校验是否属于当前查询
+     *
+     * @param cursor 游标字符串
+     * @return 游标
+     */
+    public KeysetCursor cursor(String cursor) {
+        return KeysetCursor.decode(cursor, fingerprint);
+    }
+
+    /**
+     * 生成下一页游标
+     *
+     * @param time 本页最后一行的时间戳(纳秒)
+     * @param ties 该时间戳下已返回的行数
+     * @return 游标字符串
+     */
+    public String nextCursor(long time, int ties) {
+        return new KeysetCursor(time, ties, fingerprint).encode();
+    }
+
+    /**
+     * FROM子句是否为单张表，多张表及正则表名会返回多个series
+     */
+    private static boolean isSingleSource(String source) {
+        boolean quoted = false;
+        int depth = 0;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (quoted) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && (c == ',' || c == '/')) {
+                return false;
+            }
+        }
+        return !source.trim().isEmpty();
+    }
+
+    private static int min(int... positions) {
+        int result = Integer.MAX_VALUE;
+        for (int position : positions) {
+            if (position >= 0 && position < result) {
+                result = position;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 查找引号、正则之外的关键字，忽略大小写
+     */
+    private static int indexOf(String sql, String keyword) {
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '/' && previous(sql, i) == '~') {
+                quote = '/';
+            } else if (sql.regionMatches(true, i, keyword, 0, keyword.length())
+                    && (!isIdentifier(keyword.charAt(0)) || i == 0 || !isIdentifier(sql.charAt(i - 1)))
+                    && (!isIdentifier(keyword.charAt(0)) || i + keyword.length() == sql.length() || !isIdentifier(sql.charAt(i + keyword.length())))
+                    && (!"tz".equals(keyword) || next(sql, i + keyword.length()) == '(')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static char previous(String sql, int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            if (!Character.isWhitespace(sql.charAt(i))) {
+                return sql.charAt(i);
+            }
+        }
+        return 0;
+    }
+
+    private static char next(String sql, int index) {
+        for (int i = index; i < sql.length(); i++) {
+            if (!Character.isWhitespace(sql.charAt(i))) {
+                return sql.charAt(i);
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isIdentifier(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,42 @@
+package cn.allbs.influx.page;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分页查询结果
+ *
+ * @author ChenQi
+ */
+public class QueryPage {
+
+    /**
+     * 本页数据
+     */
+    private final List<Map<String, Object>> rows;
+    /**
+     * 下一页游标，最后一页时为null
+     */
+    private final String cursor;
+
+    public QueryPage(List<Map<String, Object>> rows, String cursor) {
+        this.rows = rows;
+        this.cursor = cursor;
+    }
+
+    public List<Map<String, Object>> getRows() {
+        return this.rows;
+    }
+
+    public String getCursor() {
+        return this.cursor;
+    }
+
+    public boolean hasNext() {
+        return this.cursor != null;
+    }
+
+    public String toString() {
+        return "QueryPage(rows=" + this.getRows().size() + ", cursor=" + this.getCursor() + ")";
+    }
+}
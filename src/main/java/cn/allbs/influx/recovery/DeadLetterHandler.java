@@ -0,0 +1,22 @@
+package cn.allbs.influx.recovery;
+
+import org.influxdb.dto.Point;
+
+/**
+ * 死信处理器: 接收经二分定位后仍被服务端拒绝的数据点
+ *
+ * @author ChenQi
+ */
+@FunctionalInterface
+public interface DeadLetterHandler {
+
+    /**
+     * 处理无法写入的数据点
+     *
+     * @param database        库名
+     * @param retentionPolicy 保留策略
+     * @param point           被拒绝的数据点
+     * @param errorMessage    服务端返回的错误信息
+     */
+    void handle(String database, String retentionPolicy, Point point, String errorMessage);
+}
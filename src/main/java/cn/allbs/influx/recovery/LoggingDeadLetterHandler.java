@@ -0,0 +1,20 @@
+package cn.allbs.influx.recovery;
+
+import org.influxdb.dto.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 默认死信处理器，仅记录日志
+ *
+ * @author ChenQi
+ */
+public class LoggingDeadLetterHandler implements DeadLetterHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingDeadLetterHandler.class);
+
+    @Override
+    public void handle(String database, String retentionPolicy, Point point, String errorMessage) {
+        log.error("allbs-influx warning! InfluxDB rejected point [{}] on {}.{} due to: {}", point.lineProtocol(), database, retentionPolicy, errorMessage);
+    }
+}
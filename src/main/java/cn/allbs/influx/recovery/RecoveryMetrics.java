@@ -0,0 +1,76 @@
+package cn.allbs.influx.recovery;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 批量写入失败恢复的统计指标
+ *
+ * @author ChenQi
+ */
+public class RecoveryMetrics {
+
+    /**
+     * 因临时性错误发生的重试次数
+     */
+    private final LongAdder retries = new LongAdder();
+    /**
+     * 因数据点错误发生的拆分次数
+     */
+    private final LongAdder bisections = new LongAdder();
+    /**
+     * 经重试或拆分后成功写入的数据点数
+     */
+    private final LongAdder recoveredPoints = new LongAdder();
+    /**
+     * 投递至死信处理器的数据点数
+     */
+    private final LongAdder deadLetterPoints = new LongAdder();
+    /**
+     * 重试耗尽后仍失败的批次数
+     */
+    private final LongAdder exhaustedBatches = new LongAdder();
+
+    void retried() {
+        retries.increment();
+    }
+
+    void bisected() {
+        bisections.increment();
+    }
+
+    void recovered(int points) {
+        recoveredPoints.add(points);
+    }
+
+    void deadLettered() {
+        deadLetterPoints.increment();
+    }
+
+    void exhausted() {
+        exhaustedBatches.increment();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getBisections() {
+        return bisections.sum();
+    }
+
+    public long getRecoveredPoints() {
+        return recoveredPoints.sum();
+    }
+
+    public long getDeadLetterPoints() {
+        return deadLetterPoints.sum();
+    }
+
+    public long getExhaustedBatches() {
+        return exhaustedBatches.sum();
+    }
+
+    public String toString() {
+        return "RecoveryMetrics(retries=" + this.getRetries() + ", bisections=" + this.getBisections() + ", recoveredPoints=" + this.getRecoveredPoints() + ", deadLetterPoints=" + this.getDeadLetterPoints() + ", exhaustedBatches=" + this.getExhaustedBatches() + ")";
+    }
+}
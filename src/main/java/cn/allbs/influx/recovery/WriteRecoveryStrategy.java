@@ -0,0 +1,158 @@
+package cn.allbs.influx.recovery;
+
+import cn.allbs.influx.InfluxDbProperties;
+import cn.allbs.influx.exception.InfluxdbException;
+import cn.allbs.influx.write.EncodedBatch;
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * 批量写入失败恢复策略
+ * <p>
+ * 临时性错误(超时、连接中断、服务端缓存已满等)按指数退避重试，单次写入的重试总时长不超过 maxRetryTime;
+ * 数据点错误(字段类型冲突、无法解析、超出保留策略、partial write)将批次二分，
+ * 定位出有问题的数据点投递至死信处理器，其余数据点照常写入。
+ * 同一series同一时间戳的数据点重复写入会被覆盖，因此partial write后重写合法数据点是安全的。
+ *
+ * @author ChenQi
+ */
+public class WriteRecoveryStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteRecoveryStrategy.class);
+
+    private static final String PARTIAL_WRITE = "partial write";
+
+    private final InfluxDbProperties.Recovery recovery;
+
+    private final RecoveryMetrics metrics = new RecoveryMetrics();
+
+    private volatile DeadLetterHandler deadLetterHandler;
+
+    public WriteRecoveryStrategy(InfluxDbProperties.Recovery recovery, DeadLetterHandler deadLetterHandler) {
+        this.recovery = recovery;
+        this.deadLetterHandler = deadLetterHandler == null ? new LoggingDeadLetterHandler() : deadLetterHandler;
+    }
+
+    public RecoveryMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setDeadLetterHandler(DeadLetterHandler deadLetterHandler) {
+        if (deadLetterHandler != null) {
+            this.deadLetterHandler = deadLetterHandler;
+        }
+    }
+
+    /**
+     * 写入批次，失败时按策略恢复
+     *
+     * @param influxdb 连接
+     * @param batch    已编码的批量数据
+     */
+    public void write(InfluxDB influxdb, EncodedBatch batch) {
+        try {
+            batch.write(influxdb);
+        } catch (Exception e) {
+            log.warn("allbs-influx warning! InfluxDB batch write failed, start recovery due to: {}", e.getLocalizedMessage());
+            recover(influxdb, batch, batch.getEntries(), e);
+        }
+    }
+
+    /**
+     * 将批次中的所有数据点投递至死信处理器，用于无法再重试的批次
+     *
+     * @param batch        已编码的批量数据
+     * @param errorMessage 失败原因
+     */
+    public void deadLetter(EncodedBatch batch, String errorMessage) {
+        for (EncodedBatch.Entry entry : batch.getEntries()) {
+            metrics.deadLettered();
+            deadLetterHandler.handle(batch.getDatabase(), batch.getRetentionPolicy(), entry.getPoint(), errorMessage);
+        }
+    }
+
+    private void recover(InfluxDB influxdb, EncodedBatch template, List<EncodedBatch.Entry> points, Exception cause) {
+        if (isPointError(cause)) {
+            if (points.size() == 1) {
+                metrics.deadLettered();
+                deadLetterHandler.handle(template.getDatabase(), template.getRetentionPolicy(), points.get(0).getPoint(), cause.getLocalizedMessage());
+                return;
+            }
+            metrics.bisected();
+            int middle = points.size() >>> 1;
+            attempt(influxdb, template, points.subList(0, middle));
+            attempt(influxdb, template, points.subList(middle, points.size()));
+            return;
+        }
+        if (!isRetryWorth(cause)) {
+            throw new InfluxdbException("InfluxDB operation execution failed due to: " + cause.getLocalizedMessage(), cause);
+        }
+        Exception last = cause;
+        long backoff = recovery.getInitialBackoff();
+        long deadline = System.currentTimeMillis() + recovery.getMaxRetryTime();
+        for (int i = 0; i < recovery.getMaxRetries(); i++) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            sleep(Math.min(backoff, remaining));
+            backoff = Math.min((long) (backoff * recovery.getMultiplier()), recovery.getMaxBackoff());
+            metrics.retried();
+            try {
+                template.with(points).write(influxdb);
+                metrics.recovered(points.size());
+                return;
+            } catch (Exception e) {
+                last = e;
+                if (isPointError(e)) {
+                    recover(influxdb, template, points, e);
+                    return;
+                }
+                if (!isRetryWorth(e)) {
+                    break;
+                }
+            }
+        }
+        metrics.exhausted();
+        throw new InfluxdbException("InfluxDB operation execution failed after retries due to: " + last.getLocalizedMessage(), last);
+    }
+
+    private void attempt(InfluxDB influxdb, EncodedBatch template, List<EncodedBatch.Entry> points) {
+        try {
+            template.with(points).write(influxdb);
+            metrics.recovered(points.size());
+        } catch (Exception e) {
+            recover(influxdb, template, points, e);
+        }
+    }
+
+    private static boolean isPointError(Exception e) {
+        if (e instanceof InfluxDBException.FieldTypeConflictException
+                || e instanceof InfluxDBException.UnableToParseException
+                || e instanceof InfluxDBException.PointsBeyondRetentionPolicyException) {
+            return true;
+        }
+        String message = e.getMessage();
+        return message != null && message.contains(PARTIAL_WRITE);
+    }
+
+    private static boolean isRetryWorth(Exception e) {
+        if (e instanceof InfluxDBException) {
+            return ((InfluxDBException) e).isRetryWorth();
+        }
+        return false;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InfluxdbException("InfluxDB write recovery interrupted", e);
+        }
+    }
+}
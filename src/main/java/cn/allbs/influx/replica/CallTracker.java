@@ -0,0 +1,31 @@
+package cn.allbs.influx.replica;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * 记录当前线程发出的HTTP请求，以便竞速读取中落败的请求被取消
+ * <p>
+ * influxdb-java 的同步查询在调用线程上执行OkHttp请求，读取线程执行查询前登记 {@link ReadAttempt}，拦截器在此将请求与之绑定，
+ * 并记录响应状态码用于区分客户端错误与服务端错误。
+ *
+ * @author ChenQi
+ */
+public class CallTracker implements Interceptor {
+
+    static final ThreadLocal<ReadAttempt> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        ReadAttempt attempt = CURRENT.get();
+        if (attempt == null) {
+            return chain.proceed(chain.request());
+        }
+        attempt.bind(chain.call());
+        Response response = chain.proceed(chain.request());
+        attempt.status(response.code());
+        return response;
+    }
+}
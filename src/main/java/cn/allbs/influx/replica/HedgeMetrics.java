@@ -0,0 +1,77 @@
+package cn.allbs.influx.replica;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多副本竞速读取的统计指标
+ *
+ * @author ChenQi
+ */
+public class HedgeMetrics {
+
+    /**
+     * 查询次数
+     */
+    private final LongAdder queries = new LongAdder();
+    /**
+     * 超过等待时间后向另一副本发出重复查询的次数
+     */
+    private final LongAdder hedges = new LongAdder();
+    /**
+     * 重复查询先于首个查询返回的次数
+     */
+    private final LongAdder hedgeWins = new LongAdder();
+    /**
+     * 副本查询失败后转向另一副本的次数
+     */
+    private final LongAdder failovers = new LongAdder();
+    /**
+     * 当前的重复查询等待时间(纳秒)
+     */
+    private volatile long hedgeDelayNanos;
+
+    void queried() {
+        queries.increment();
+    }
+
+    void hedged() {
+        hedges.increment();
+    }
+
+    void hedgeWon() {
+        hedgeWins.increment();
+    }
+
+    void failedOver() {
+        failovers.increment();
+    }
+
+    void hedgeDelay(long nanos) {
+        hedgeDelayNanos = nanos;
+    }
+
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    public long getFailovers() {
+        return failovers.sum();
+    }
+
+    public long getHedgeDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos);
+    }
+
+    public String toString() {
+        return "HedgeMetrics(queries=" + this.getQueries() + ", hedges=" + this.getHedges() + ", hedgeWins=" + this.getHedgeWins() + ", failovers=" + this.getFailovers() + ", hedgeDelayMillis=" + this.getHedgeDelayMillis() + ")";
+    }
+}
@@ -0,0 +1,246 @@
+package cn.allbs.influx.replica;
+
+import cn.allbs.influx.InfluxDbProperties;
+import cn.allbs.influx.exception.InfluxdbException;
+import cn.allbs.influx.util.NamedThreadFactory;
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.QueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * 多副本竞速读取
+ * <p>
+ * 查询按轮询发往其中一个副本，超过最近查询耗时的指定分位数仍未返回时向下一个副本发出重复查询，
+ * 先返回的结果生效，其余请求被取消；副本连接失败、超时或返回5xx时立即转向下一个副本，
+ * 返回4xx等客户端错误时直接失败，不再转向其它副本。读取线程数上限为 max-threads，超出时查询排队等待。
+ * 只有不含 INTO 的 SELECT 及 SHOW 语句会被分发，其余语句只发往主连接。
+ *
+ * @author ChenQi
+ */
+public class HedgedReader {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgedReader.class);
+
+    private static final Pattern READ_ONLY = Pattern.compile("^\\s*(SELECT|SHOW)\\s", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern INTO = Pattern.compile("\\bINTO\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 计算分位数前的最少样本数
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final InfluxDbProperties.Replicas config;
+
+    private final LatencyTracker latency;
+
+    private final ExecutorService executor;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final AtomicInteger samples = new AtomicInteger();
+
+    private final HedgeMetrics metrics = new HedgeMetrics();
+
+    /**
+     * @param name       连接名
+     * @param config     副本配置
+     * @param primaryUrl 主连接地址
+     * @param primary    主连接，由调用方关闭
+     */
+    public HedgedReader(String name, InfluxDbProperties.Replicas config, String primaryUrl, InfluxDB primary) {
+        this.config = config;
+        this.replicas.add(new Replica(primaryUrl, primary));
+        this.latency = new LatencyTracker(config.getLatencyWindow(), config.getHedgePercentile());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(config.getMaxThreads(), config.getMaxThreads(), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("allbs-influx-" + name + "-read"));
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+        metrics.hedgeDelay(TimeUnit.MILLISECONDS.toNanos(config.getInitialHedgeDelay()));
+    }
+
+    /**
+     * 添加副本，关闭时一并关闭，HTTP客户端需添加 {@link CallTracker} 拦截器，否则落败的请求无法被取消
+     *
+     * @param url      地址
+     * @param influxdb 连接
+     */
+    public void addReplica(String url, InfluxDB influxdb) {
+        replicas.add(new Replica(url, influxdb));
+    }
+
+    /**
+     * 是否为可分发至副本的只读语句
+     *
+     * @param command sql语句
+     * @return 是否只读
+     */
+    public static boolean isReadOnly(String command) {
+        return READ_ONLY.matcher(command).find() && !INTO.matcher(command).find();
+    }
+
+    /**
+     * 竞速查询
+     *
+     * @param query 查询
+     * @return 最先返回的结果
+     */
+    public QueryResult query(Query query) {
+        metrics.queried();
+        Race race = new Race(query, Math.floorMod(next.getAndIncrement(), replicas.size()));
+        race.launch();
+        try {
+            long delay = hedgeDelay();
+            try {
+                return race.result.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (config.isHedge() && race.launch()) {
+                    metrics.hedged();
+                    log.debug("allbs-influx notice: no response within {} ms, hedging query [{}]", TimeUnit.NANOSECONDS.toMillis(delay), query.getCommand());
+                }
+                return race.result.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new InfluxdbException("InfluxDB query failed on all replicas due to: " + cause.getLocalizedMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InfluxdbException("InfluxDB query interrupted");
+        } finally {
+            race.cancel();
+        }
+    }
+
+    /**
+     * 统计指标
+     *
+     * @return {@link HedgeMetrics}
+     */
+    public HedgeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 关闭读取线程及副本连接
+     */
+    public void close() {
+        executor.shutdownNow();
+        for (int i = 1; i < replicas.size(); i++) {
+            replicas.get(i).influxdb.close();
+        }
+    }
+
+    private long hedgeDelay() {
+        long p = samples.get() < MIN_SAMPLES ? -1 : latency.percentile();
+        long delay = p < 0 ? TimeUnit.MILLISECONDS.toNanos(config.getInitialHedgeDelay())
+                : Math.max(p, TimeUnit.MILLISECONDS.toNanos(config.getMinHedgeDelay()));
+        metrics.hedgeDelay(delay);
+        return delay;
+    }
+
+    /**
+     * 未收到响应(连接失败、超时)或服务端错误时可转向其它副本，收到其它状态码时换副本结果相同
+     */
+    private static boolean isTransient(ReadAttempt attempt) {
+        int status = attempt.getStatus();
+        return status == 0 || status >= 500;
+    }
+
+    /**
+     * 一次查询在各副本间的竞速
+     */
+    private final class Race {
+
+        private final Query query;
+
+        private final int start;
+
+        private final CompletableFuture<QueryResult> result = new CompletableFuture<>();
+
+        private final List<ReadAttempt> attempts = new ArrayList<>(2);
+
+        private int failed;
+
+        private Race(Query query, int start) {
+            this.query = query;
+            this.start = start;
+        }
+
+        /**
+         * 向下一个副本发出查询
+         *
+         * @return 是否还有未查询的副本
+         */
+        private synchronized boolean launch() {
+            if (result.isDone() || attempts.size() >= replicas.size()) {
+                return false;
+            }
+            ReadAttempt attempt = new ReadAttempt(replicas.get((start + attempts.size()) % replicas.size()), !attempts.isEmpty());
+            attempts.add(attempt);
+            executor.execute(() -> run(attempt));
+            return true;
+        }
+
+        private void run(ReadAttempt attempt) {
+            if (attempt.isCancelled()) {
+                return;
+            }
+            CallTracker.CURRENT.set(attempt);
+            long begin = System.nanoTime();
+            try {
+                QueryResult queryResult = attempt.replica.influxdb.query(query);
+                record(begin);
+                if (result.complete(queryResult) && attempt.hedge) {
+                    metrics.hedgeWon();
+                }
+            } catch (Exception e) {
+                if (!attempt.isCancelled()) {
+                    // 收到响应的失败同样反映副本的响应耗时，连接失败及被取消的请求不计入
+                    if (attempt.getStatus() > 0) {
+                        record(begin);
+                    }
+                    failed(attempt, e);
+                }
+            } finally {
+                CallTracker.CURRENT.remove();
+            }
+        }
+
+        private void record(long begin) {
+            latency.record(System.nanoTime() - begin);
+            samples.incrementAndGet();
+        }
+
+        private synchronized void failed(ReadAttempt attempt, Exception e) {
+            log.warn("allbs-influx warning! InfluxDB replica [{}] query failed due to: {}", attempt.replica.url, e.getLocalizedMessage());
+            failed++;
+            if (!isTransient(attempt)) {
+                result.completeExceptionally(e);
+            } else if (launch()) {
+                metrics.failedOver();
+            } else if (failed == attempts.size()) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        private synchronized void cancel() {
+            attempts.forEach(ReadAttempt::cancel);
+        }
+    }
+}
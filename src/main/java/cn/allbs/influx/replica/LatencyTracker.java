@@ -0,0 +1,55 @@
+package cn.allbs.influx.replica;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 最近若干次查询耗时的分位数
+ * <p>
+ * 环形数组记录最近 window 次耗时，每新增 window/10 个样本重新排序计算一次分位数，读取为volatile读。
+ *
+ * @author ChenQi
+ */
+final class LatencyTracker {
+
+    private final AtomicLongArray samples;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final double percentile;
+
+    private final int refreshEvery;
+
+    private volatile long computedAt;
+
+    private volatile long value = -1;
+
+    LatencyTracker(int window, double percentile) {
+        this.samples = new AtomicLongArray(window);
+        this.percentile = percentile;
+        this.refreshEvery = Math.max(1, window / 10);
+    }
+
+    void record(long nanos) {
+        long n = count.getAndIncrement();
+        samples.set((int) (n % samples.length()), nanos);
+        if (n + 1 - computedAt >= refreshEvery) {
+            computedAt = n + 1;
+            int size = (int) Math.min(n + 1, samples.length());
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            value = sorted[Math.min(size - 1, (int) Math.ceil(percentile / 100 * size) - 1)];
+        }
+    }
+
+    /**
+     * @return 分位数耗时(纳秒)，样本不足时返回-1
+     */
+    long percentile() {
+        return value;
+    }
+}
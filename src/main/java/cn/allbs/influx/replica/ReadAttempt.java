@@ -0,0 +1,56 @@
+package cn.allbs.influx.replica;
+
+import okhttp3.Call;
+
+/**
+ * 一次发往某个副本的查询
+ *
+ * @author ChenQi
+ */
+final class ReadAttempt {
+
+    final Replica replica;
+
+    final boolean hedge;
+
+    private volatile Call call;
+
+    private volatile boolean cancelled;
+
+    /**
+     * 响应状态码，未收到响应时为0
+     */
+    private volatile int status;
+
+    ReadAttempt(Replica replica, boolean hedge) {
+        this.replica = replica;
+        this.hedge = hedge;
+    }
+
+    void bind(Call call) {
+        this.call = call;
+        if (cancelled) {
+            call.cancel();
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+        Call current = call;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void status(int status) {
+        this.status = status;
+    }
+
+    int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,20 @@
+package cn.allbs.influx.replica;
+
+import org.influxdb.InfluxDB;
+
+/**
+ * 一个可读副本
+ *
+ * @author ChenQi
+ */
+final class Replica {
+
+    final String url;
+
+    final InfluxDB influxdb;
+
+    Replica(String url, InfluxDB influxdb) {
+        this.url = url;
+        this.influxdb = influxdb;
+    }
+}
@@ -0,0 +1,376 @@
+package cn.allbs.influx.rollup;
+
+import cn.allbs.influx.InfluxDbProperties;
+import cn.allbs.influx.util.InfluxDurations;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 降采样查询路由
+ * <p>
+ * 将 {@code GROUP BY time(x)} 聚合查询改写为读取满足时间粒度及时间范围的最粗粒度降采样层。
+ * 降采样层由连续查询以 {@code agg(*)} 生成，字段名为 {@code agg_字段名}，因此仅当查询中的聚合函数
+ * 可由该层的聚合结果再次聚合得到时才会改写(mean/max/min/sum/first/last 同名函数，count 改写为 sum)，
+ * 否则原样返回。
+ * <p>
+ * 降采样层只包含原始字段的聚合结果，WHERE 条件中仅引用 {@code time} 及 tag 时才会改写，
+ * 引用字段(或无法确认是否为 tag)时原样返回。
+ *
+ * @author ChenQi
+ */
+public class RollupQueryRouter {
+
+    private static final Pattern SELECT = Pattern.compile("(?is)^\\s*SELECT\\s+(.+?)\\s+FROM\\s+");
+
+    private static final Pattern FROM = Pattern.compile("(?i)\\s+FROM\\s+((?:\"[^\"]+\"|[\\w-]+)(?:\\.(?:\"[^\"]*\"|[\\w-]*)){0,2})(\\s*,)?");
+
+    private static final Pattern GROUP_BY_TIME = Pattern.compile("(?i)\\bGROUP\\s+BY\\s+(?:[^;]*?,\\s*)?time\\(\\s*(\\w+)\\s*(?:,[^)]*)?\\)");
+
+    private static final Pattern CALL = Pattern.compile("(?i)(\\w+)\\(\\s*(?:\"([^\"]+)\"|(\\w+))\\s*\\)(\\s+AS\\s+(?:\"[^\"]+\"|\\w+))?");
+
+    private static final Pattern RELATIVE_LOWER = Pattern.compile("(?i)\\btime\\s*>=?\\s*now\\(\\)\\s*-\\s*(\\w+)");
+
+    private static final Pattern ABSOLUTE_LOWER = Pattern.compile("(?i)\\btime\\s*>=?\\s*'([^']+)'");
+
+    private static final long TAG_KEYS_TTL = TimeUnit.MINUTES.toNanos(5);
+
+    private final String database;
+
+    private final String retentionPolicy;
+
+    private final List<Tier> tiers = new ArrayList<>();
+
+    private final Function<String, Set<String>> tagKeyResolver;
+
+    private final Map<String, TagKeys> tagKeys = new ConcurrentHashMap<>();
+
+    /**
+     * @param tagKeyResolver 根据 measurement 查询其 tag key，查询失败时返回null
+     */
+    public RollupQueryRouter(String database, String retentionPolicy, List<InfluxDbProperties.Rollup> rollups,
+                             Function<String, Set<String>> tagKeyResolver) {
+        this.database = database;
+        this.retentionPolicy = retentionPolicy;
+        this.tagKeyResolver = tagKeyResolver;
+        for (InfluxDbProperties.Rollup rollup : rollups) {
+            tiers.add(new Tier(rollup));
+        }
+        tiers.sort(Comparator.comparingLong((Tier t) -> t.interval).reversed());
+    }
+
+    /**
+     * 改写查询，无可用降采样层时原样返回
+     *
+     * @param command sql语句
+     * @return 改写后的sql语句
+     */
+    public String route(String command) {
+        if (tiers.isEmpty() || command == null) {
+            return command;
+        }
+        Matcher select = SELECT.matcher(command);
+        Matcher groupBy = GROUP_BY_TIME.matcher(command);
+        if (!select.find() || !groupBy.find()) {
+            return command;
+        }
+        Matcher from = FROM.matcher(command);
+        if (!from.region(select.end(1), command.length()).lookingAt() || from.group(2) != null) {
+            return command;
+        }
+        String[] source = splitIdentifier(from.group(1));
+        String measurement = source[source.length - 1];
+        if (source.length == 3 && !source[0].isEmpty() && !database.equals(source[0])) {
+            return command;
+        }
+        if (source.length >= 2 && !source[source.length - 2].isEmpty() && !retentionPolicy.equals(source[source.length - 2])) {
+            return command;
+        }
+        long groupInterval;
+        try {
+            groupInterval = InfluxDurations.toNanos(groupBy.group(1));
+        } catch (IllegalArgumentException e) {
+            return command;
+        }
+        long range = range(command);
+        for (Tier tier : tiers) {
+            if (tier.interval > groupInterval || groupInterval % tier.interval != 0
+                    || tier.duration < range || !tier.measurements.matcher(measurement).matches()) {
+                continue;
+            }
+            String fields = rewriteFields(select.group(1), tier.aggregation);
+            if (fields == null) {
+                continue;
+            }
+            if (!filtersOnTagsOnly(command.substring(from.end(1), groupBy.start()), measurement)) {
+                return command;
+            }
+            return command.substring(0, select.start(1)) + fields
+                    + command.substring(select.end(1), from.start(1))
+                    + "\"" + database + "\".\"" + tier.name + "\".\"" + measurement + "\""
+                    + command.substring(from.end(1));
+        }
+        return command;
+    }
+
+    /**
+     * WHERE 条件是否只引用 time 及 tag
+     *
+     * @param clause      FROM 与 GROUP BY 之间的部分
+     * @param measurement 查询的measurement
+     */
+    private boolean filtersOnTagsOnly(String clause, String measurement) {
+        Set<String> tags = null;
+        int i = 0;
+        int length = clause.length();
+        while (i < length) {
+            char c = clause.charAt(i);
+            String identifier = null;
+            if (c == '\'') {
+                i = skipQuoted(clause, i, '\'');
+                continue;
+            } else if (c == '/' && previousIsRegexOperator(clause, i)) {
+                i = skipQuoted(clause, i, '/');
+                continue;
+            } else if (c == '"') {
+                int end = skipQuoted(clause, i, '"');
+                identifier = clause.substring(i + 1, end - 1).replace("\\\"", "\"");
+                i = end;
+            } else if (Character.isDigit(c) || c == '$') {
+                i++;
+                while (i < length && (Character.isLetterOrDigit(clause.charAt(i)) || clause.charAt(i) == '.' || clause.charAt(i) == '_')) {
+                    i++;
+                }
+                continue;
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < length && (Character.isLetterOrDigit(clause.charAt(i)) || clause.charAt(i) == '_')) {
+                    i++;
+                }
+                String word = clause.substring(start, i);
+                int next = skipSpaces(clause, i);
+                if (next < length && clause.charAt(next) == '(') {
+                    continue;
+                }
+                switch (word.toLowerCase(Locale.ROOT)) {
+                    case "where":
+                    case "and":
+                    case "or":
+                    case "true":
+                    case "false":
+                        continue;
+                    default:
+                        identifier = word;
+                }
+            } else {
+                i++;
+                continue;
+            }
+            String type = null;
+            if (clause.startsWith("::", i)) {
+                int start = i + 2;
+                i = start;
+                while (i < length && Character.isLetter(clause.charAt(i))) {
+                    i++;
+                }
+                type = clause.substring(start, i).toLowerCase(Locale.ROOT);
+            }
+            if ("field".equals(type)) {
+                return false;
+            }
+            if ("tag".equals(type) || "time".equalsIgnoreCase(identifier)) {
+                continue;
+            }
+            if (tags == null) {
+                tags = tagKeys(measurement);
+                if (tags == null) {
+                    return false;
+                }
+            }
+            if (!tags.contains(identifier)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 带过期时间缓存的 tag key，缓存过期只会导致少改写，不会读错数据
+     */
+    private Set<String> tagKeys(String measurement) {
+        long now = System.nanoTime();
+        TagKeys cached = tagKeys.get(measurement);
+        if (cached != null && now - cached.loadedAt < TAG_KEYS_TTL) {
+            return cached.keys;
+        }
+        Set<String> keys = tagKeyResolver == null ? null : tagKeyResolver.apply(measurement);
+        if (keys == null) {
+            return null;
+        }
+        tagKeys.put(measurement, new TagKeys(keys, now));
+        return keys;
+    }
+
+    private static int skipQuoted(String clause, int start, char quote) {
+        int i = start + 1;
+        while (i < clause.length()) {
+            char c = clause.charAt(i++);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                break;
+            }
+        }
+        return Math.min(i, clause.length());
+    }
+
+    private static int skipSpaces(String clause, int i) {
+        while (i < clause.length() && Character.isWhitespace(clause.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean previousIsRegexOperator(String clause, int i) {
+        int j = i - 1;
+        while (j >= 0 && Character.isWhitespace(clause.charAt(j))) {
+            j--;
+        }
+        return j >= 1 && clause.charAt(j) == '~' && (clause.charAt(j - 1) == '=' || clause.charAt(j - 1) == '!');
+    }
+
+    /**
+     * 查询时间下限距当前的跨度(纳秒)，无下限时为 {@link InfluxDurations#INFINITE}
+     */
+    private static long range(String command) {
+        Matcher relative = RELATIVE_LOWER.matcher(command);
+        if (relative.find()) {
+            try {
+                return InfluxDurations.toNanos(relative.group(1));
+            } catch (IllegalArgumentException e) {
+                return InfluxDurations.INFINITE;
+            }
+        }
+        Matcher absolute = ABSOLUTE_LOWER.matcher(command);
+        if (absolute.find()) {
+            try {
+                long lower = OffsetDateTime.parse(absolute.group(1).trim().replace(' ', 'T')).toInstant().toEpochMilli();
+                return TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - lower));
+            } catch (DateTimeParseException e) {
+                return InfluxDurations.INFINITE;
+            }
+        }
+        return InfluxDurations.INFINITE;
+    }
+
+    /**
+     * 将聚合函数的字段替换为降采样层的字段，存在无法改写的部分时返回null
+     */
+    private static String rewriteFields(String fields, String aggregation) {
+        Matcher call = CALL.matcher(fields);
+        StringBuilder rewritten = new StringBuilder();
+        int last = 0;
+        while (call.find()) {
+            String gap = fields.substring(last, call.start());
+            if (!gap.trim().isEmpty() && !",".equals(gap.trim())) {
+                return null;
+            }
+            String function = call.group(1).toLowerCase();
+            String field = call.group(2) != null ? call.group(2) : call.group(3);
+            String composed = compose(function, aggregation);
+            if (composed == null) {
+                return null;
+            }
+            rewritten.append(gap).append(composed).append("(\"").append(aggregation).append('_').append(field).append("\")");
+            if (call.group(4) != null) {
+                rewritten.append(call.group(4));
+            } else if (!composed.equals(function)) {
+                rewritten.append(" AS \"").append(function).append('"');
+            }
+            last = call.end();
+        }
+        if (last == 0 || !fields.substring(last).trim().isEmpty()) {
+            return null;
+        }
+        return rewritten.toString();
+    }
+
+    private static String compose(String function, String aggregation) {
+        if ("count".equals(aggregation)) {
+            return "count".equals(function) ? "sum" : null;
+        }
+        switch (function) {
+            case "mean":
+            case "max":
+            case "min":
+            case "sum":
+            case "first":
+            case "last":
+                return function.equals(aggregation) ? function : null;
+            default:
+                return null;
+        }
+    }
+
+    private static String[] splitIdentifier(String identifier) {
+        List<String> parts = new ArrayList<>(3);
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (char c : identifier.toCharArray()) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '.' && !quoted) {
+                parts.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        parts.add(current.toString());
+        return parts.toArray(new String[0]);
+    }
+
+    private static final class TagKeys {
+
+        private final Set<String> keys;
+
+        private final long loadedAt;
+
+        private TagKeys(Set<String> keys, long loadedAt) {
+            this.keys = keys;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static final class Tier {
+
+        private final String name;
+
+        private final long interval;
+
+        private final long duration;
+
+        private final String aggregation;
+
+        private final Pattern measurements;
+
+        private Tier(InfluxDbProperties.Rollup rollup) {
+            this.name = rollup.getName();
+            this.interval = InfluxDurations.toNanos(rollup.getInterval());
+            this.duration = InfluxDurations.toNanos(rollup.getDuration());
+            this.aggregation = rollup.getAggregation().toLowerCase();
+            this.measurements = Pattern.compile(rollup.getMeasurements());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package cn.allbs.influx.transfer;
+
+import cn.allbs.influx.exception.InfluxdbException;
+import cn.allbs.influx.util.InfluxQl;
+import cn.allbs.influx.util.LineProtocol;
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.QueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 行协议导出
+ * <p>
+ * 使用分块查询逐块写入文件，内存中只保留当前块；目标文件以 .gz 结尾时进行gzip压缩。
+ * 字段类型通过 SHOW FIELD KEYS 获取，避免JSON响应中整数被解析为浮点数后导入时发生字段类型冲突；
+ * 不在字段列表中的非time列按tag处理；聚合或别名列不是字段，不含任何字段的行无法写为行协议，计入跳过数。
+ *
+ * @author ChenQi
+ */
+public class LineProtocolExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(LineProtocolExporter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InfluxDB influxdb;
+
+    private final String database;
+
+    private final String retentionPolicy;
+
+    private final Map<String, Map<String, String>> fieldTypes = new HashMap<>();
+
+    public LineProtocolExporter(InfluxDB influxdb, String database, String retentionPolicy) {
+        this.influxdb = influxdb;
+        this.database = database;
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    /**
+     * 导出查询结果
+     *
+     * @param command   sql语句
+     * @param target    目标文件
+     * @param chunkSize 每块行数
+     * @param progress  进度回调，可为null
+     * @return 导出结果
+     */
+    public TransferResult export(String command, Path target, int chunkSize, TransferProgress progress) {
+        long start = System.currentTimeMillis();
+        long[] counters = new long[3];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             Writer writer = open(channel, target)) {
+            writer.write("# DML\n# CONTEXT-DATABASE: " + database + "\n# CONTEXT-RETENTION-POLICY: " + retentionPolicy + "\n");
+            influxdb.query(new Query(command, database), chunkSize, (cancellable, result) -> {
+                try {
+                    if (result.hasError()) {
+                        throw new InfluxdbException(result.getError());
+                    }
+                    writeChunk(writer, result, counters);
+                    if (progress != null) {
+                        progress.onProgress(counters[0], counters[1], TransferResult.rate(counters[0], System.currentTimeMillis() - start));
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                    cancellable.cancel();
+                    done.countDown();
+                }
+            }, done::countDown, e -> {
+                failure.compareAndSet(null, e);
+                done.countDown();
+            });
+            done.await();
+        } catch (IOException e) {
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        }
+        if (failure.get() != null) {
+            log.error("allbs-influx warning! InfluxDB export failed due to: {}", failure.get().getLocalizedMessage());
+            throw new InfluxdbException("InfluxDB export failed due to: " + failure.get().getLocalizedMessage(), failure.get());
+        }
+        if (counters[2] > 0) {
+            log.warn("allbs-influx warning! {} rows without any field column were skipped, select raw fields instead of aggregates or aliases", counters[2]);
+        }
+        TransferResult transferResult = new TransferResult(counters[0], counters[1], counters[2], System.currentTimeMillis() - start);
+        log.info("allbs-influx notice: InfluxDB export to [{}] finished, {}", target, transferResult);
+        return transferResult;
+    }
+
+    private static Writer open(FileChannel channel, Path target) throws IOException {
+        OutputStream out = Channels.newOutputStream(channel);
+        if (target.getFileName().toString().endsWith(".gz")) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private void writeChunk(Writer writer, QueryResult result, long[] counters) throws IOException {
+        if (result.getResults() == null) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder(256);
+        for (QueryResult.Result r : result.getResults()) {
+            if (r.hasError()) {
+                throw new InfluxdbException(r.getError());
+            }
+            if (r.getSeries() == null) {
+                continue;
+            }
+            for (QueryResult.Series series : r.getSeries()) {
+                Map<String, String> types = fieldTypes(series.getName());
+                List<String> columns = series.getColumns();
+                for (List<Object> values : series.getValues()) {
+                    sb.setLength(0);
+                    if (appendLine(sb, series, types, columns, values)) {
+                        sb.append('\n');
+                        writer.write(sb.toString());
+                        counters[0]++;
+                        counters[1] += sb.length();
+                    } else {
+                        counters[2]++;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean appendLine(StringBuilder sb, QueryResult.Series series, Map<String, String> types, List<String> columns, List<Object> values) {
+        Map<String, String> tags = new TreeMap<>();
+        if (series.getTags() != null) {
+            series.getTags().forEach((k, v) -> {
+                if (v != null && !v.isEmpty()) {
+                    tags.put(k, v);
+                }
+            });
+        }
+        Object time = null;
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            Object value = values.get(i);
+            if ("time".equals(column)) {
+                time = value;
+            } else if (value != null && !types.containsKey(column)) {
+                tags.put(column, value.toString());
+            }
+        }
+        LineProtocol.appendMeasurement(sb, series.getName());
+        tags.forEach((k, v) -> {
+            sb.append(',');
+            LineProtocol.appendKey(sb, k);
+            sb.append('=');
+            LineProtocol.appendKey(sb, v);
+        });
+        boolean first = true;
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            Object value = values.get(i);
+            if (value == null || !types.containsKey(column)) {
+                continue;
+            }
+            sb.append(first ? ' ' : ',');
+            LineProtocol.appendKey(sb, column);
+            sb.append('=');
+            LineProtocol.appendFieldValue(sb, value, types.get(column));
+            first = false;
+        }
+        if (first) {
+            return false;
+        }
+        if (time != null) {
+            sb.append(' ').append(toEpochNanos(time));
+        }
+        return true;
+    }
+
+    private static long toEpochNanos(Object time) {
+        if (time instanceof Number) {
+            return ((Number) time).longValue();
+        }
+        Instant instant = Instant.parse(time.toString());
+        return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+    }
+
+    private Map<String, String> fieldTypes(String measurement) {
+        return fieldTypes.computeIfAbsent(measurement, m -> {
+            Map<String, String> types = new HashMap<>();
+            QueryResult result = influxdb.query(new Query("SHOW FIELD KEYS FROM " + InfluxQl.identifier(retentionPolicy) + "." + InfluxQl.identifier(m), database));
+            if (result.getResults() != null && result.getResults().get(0).getSeries() != null) {
+                for (QueryResult.Series series : result.getResults().get(0).getSeries()) {
+                    series.getValues().forEach(v -> types.put(String.valueOf(v.get(0)), String.valueOf(v.get(1))));
+                }
+            }
+            return types;
+        });
+    }
+}
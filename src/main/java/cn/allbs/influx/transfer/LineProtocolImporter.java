@@ -0,0 +1,250 @@
+package cn.allbs.influx.transfer;
+
+import cn.allbs.influx.cardinality.CardinalityGuard;
+import cn.allbs.influx.exception.InfluxdbException;
+import cn.allbs.influx.util.LineProtocol;
+import cn.allbs.influx.util.NamedThreadFactory;
+import cn.allbs.influx.write.WriteRateLimiter;
+import org.influxdb.InfluxDB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 行协议导入
+ * <p>
+ * 单线程流式读取文件(gzip按文件头自动识别)，按字节数切分批次后交由写入线程并行校验及写入，
+ * 同时在途的批次数不超过并发数，读取速度超过写入速度时读取线程阻塞，内存占用有上限。
+ * 以 # 开头的注释行及空行会被忽略，非法行计入跳过数；与导出文件及 influx_inspect 相同，
+ * {@code # CONTEXT-DATABASE:}、{@code # CONTEXT-RETENTION-POLICY:} 指定之后各行写入的库及保留策略，未指定时写入当前库及保留策略。
+ * 与其他写入方式相同，写入前经过series基数保护及写入限流，被丢弃的行计入跳过数。
+ *
+ * @author ChenQi
+ */
+public class LineProtocolImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(LineProtocolImporter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final AtomicInteger POOL_SEQ = new AtomicInteger();
+
+    private static final String CONTEXT_DATABASE = "# CONTEXT-DATABASE:";
+
+    private static final String CONTEXT_RETENTION_POLICY = "# CONTEXT-RETENTION-POLICY:";
+
+    private final InfluxDB influxdb;
+
+    private final String database;
+
+    private final String retentionPolicy;
+
+    private final CardinalityGuard cardinalityGuard;
+
+    private final WriteRateLimiter rateLimiter;
+
+    public LineProtocolImporter(InfluxDB influxdb, String database, String retentionPolicy) {
+        this(influxdb, database, retentionPolicy, null, null);
+    }
+
+    /**
+     * @param cardinalityGuard series基数保护，为null时不检查
+     * @param rateLimiter      写入限流，为null时不限流
+     */
+    public LineProtocolImporter(InfluxDB influxdb, String database, String retentionPolicy,
+                                CardinalityGuard cardinalityGuard, WriteRateLimiter rateLimiter) {
+        this.influxdb = influxdb;
+        this.database = database;
+        this.retentionPolicy = retentionPolicy;
+        this.cardinalityGuard = cardinalityGuard;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * 导入行协议文件，时间戳精度为纳秒
+     *
+     * @param source      源文件
+     * @param batchBytes  每批次字节数上限
+     * @param concurrency 并发写入数
+     * @param progress    进度回调，可为null
+     * @return 导入结果
+     */
+    public TransferResult importFile(Path source, int batchBytes, int concurrency, TransferProgress progress) {
+        long start = System.currentTimeMillis();
+        AtomicLong points = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Semaphore inFlight = new Semaphore(concurrency);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, new NamedThreadFactory("allbs-influx-import-" + POOL_SEQ.incrementAndGet()));
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+             BufferedReader reader = open(channel)) {
+            List<String> batch = new ArrayList<>();
+            int size = 0;
+            String db = database;
+            String rp = retentionPolicy;
+            String line;
+            while (failure.get() == null && (line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    String context = context(line, CONTEXT_DATABASE);
+                    String contextRp = context(line, CONTEXT_RETENTION_POLICY);
+                    if ((context != null && !context.equals(db)) || (contextRp != null && !contextRp.equals(rp))) {
+                        if (!batch.isEmpty()) {
+                            submit(executor, inFlight, db, rp, batch, size, points, bytes, skipped, failure, progress, start);
+                            batch = new ArrayList<>();
+                            size = 0;
+                        }
+                        db = context != null ? context : db;
+                        rp = contextRp != null ? contextRp : rp;
+                    }
+                    continue;
+                }
+                batch.add(line);
+                size += line.length() + 1;
+                if (size >= batchBytes) {
+                    submit(executor, inFlight, db, rp, batch, size, points, bytes, skipped, failure, progress, start);
+                    batch = new ArrayList<>();
+                    size = 0;
+                }
+            }
+            if (!batch.isEmpty() && failure.get() == null) {
+                submit(executor, inFlight, db, rp, batch, size, points, bytes, skipped, failure, progress, start);
+            }
+            inFlight.acquire(concurrency);
+        } catch (IOException e) {
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure.get() != null) {
+            log.error("allbs-influx warning! InfluxDB import failed due to: {}", failure.get().getLocalizedMessage());
+            throw new InfluxdbException("InfluxDB import failed due to: " + failure.get().getLocalizedMessage(), failure.get());
+        }
+        TransferResult result = new TransferResult(points.get(), bytes.get(), skipped.get(), System.currentTimeMillis() - start);
+        log.info("allbs-influx notice: InfluxDB import from [{}] finished, {}", source, result);
+        return result;
+    }
+
+    private void submit(ExecutorService executor, Semaphore inFlight, String db, String rp, List<String> batch, int size,
+                        AtomicLong points, AtomicLong bytes, AtomicLong skipped, AtomicReference<Throwable> failure,
+                        TransferProgress progress, long start) throws InterruptedException {
+        inFlight.acquire();
+        executor.execute(() -> {
+            try {
+                Map<String, List<String>> measurements = new LinkedHashMap<>();
+                for (String line : batch) {
+                    if (!LineProtocol.isValid(line)) {
+                        skipped.incrementAndGet();
+                        log.warn("allbs-influx warning! skip invalid line protocol [{}]", line);
+                        continue;
+                    }
+                    int seriesEnd = LineProtocol.sections(line)[0];
+                    String seriesKey = line.substring(0, seriesEnd);
+                    String measurement = LineProtocol.measurement(seriesKey);
+                    if (cardinalityGuard != null) {
+                        Map<String, String> tags = LineProtocol.tags(seriesKey);
+                        Map<String, String> kept = cardinalityGuard.checkSeries(measurement, tags, 1);
+                        if (kept == null) {
+                            skipped.incrementAndGet();
+                            continue;
+                        }
+                        if (kept != tags) {
+                            line = rewriteTags(line, seriesEnd, measurement, kept);
+                        }
+                    }
+                    measurements.computeIfAbsent(measurement, k -> new ArrayList<>()).add(line);
+                }
+                List<String> valid = new ArrayList<>(batch.size());
+                for (Map.Entry<String, List<String>> entry : measurements.entrySet()) {
+                    List<String> lines = entry.getValue();
+                    if (rateLimiter != null && !rateLimiter.acquire(db, entry.getKey(), lines.size(), bytes(lines))) {
+                        skipped.addAndGet(lines.size());
+                        continue;
+                    }
+                    valid.addAll(lines);
+                }
+                if (!valid.isEmpty()) {
+                    influxdb.write(db, rp, InfluxDB.ConsistencyLevel.ONE, TimeUnit.NANOSECONDS, valid);
+                }
+                long total = points.addAndGet(valid.size());
+                long totalBytes = bytes.addAndGet(size);
+                if (progress != null) {
+                    progress.onProgress(total, totalBytes, TransferResult.rate(total, System.currentTimeMillis() - start));
+                }
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * 解析上下文注释行
+     *
+     * @return 注释行不是该上下文时返回null
+     */
+    private static String context(String line, String prefix) {
+        if (!line.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            return null;
+        }
+        String value = line.substring(prefix.length()).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String rewriteTags(String line, int seriesEnd, String measurement, Map<String, String> tags) {
+        StringBuilder sb = new StringBuilder(line.length());
+        LineProtocol.appendMeasurement(sb, measurement);
+        tags.forEach((k, v) -> {
+            sb.append(',');
+            LineProtocol.appendKey(sb, k);
+            sb.append('=');
+            LineProtocol.appendKey(sb, v);
+        });
+        return sb.append(line, seriesEnd, line.length()).toString();
+    }
+
+    private static long bytes(List<String> lines) {
+        long bytes = 0;
+        for (String line : lines) {
+            bytes += line.length() + 1;
+        }
+        return bytes;
+    }
+
+    private static BufferedReader open(FileChannel channel) throws IOException {
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+        in.mark(2);
+        int magic = in.read() | (in.read() << 8);
+        in.reset();
+        if (magic == GZIPInputStream.GZIP_MAGIC) {
+            in = new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+}
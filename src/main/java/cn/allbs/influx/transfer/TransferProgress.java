@@ -0,0 +1,19 @@
+package cn.allbs.influx.transfer;
+
+/**
+ * 导入导出进度回调，导入时会在多个写入线程中回调
+ *
+ * @author ChenQi
+ */
+@FunctionalInterface
+public interface TransferProgress {
+
+    /**
+     * 进度回调
+     *
+     * @param points          已处理的数据点数
+     * @param bytes           已处理的行协议字节数(未压缩)
+     * @param pointsPerSecond 平均速率
+     */
+    void onProgress(long points, long bytes, double pointsPerSecond);
+}
@@ -0,0 +1,66 @@
+package cn.allbs.influx.transfer;
+
+/**
+ * 导入导出结果
+ *
+ * @author ChenQi
+ */
+public class TransferResult {
+
+    /**
+     * 数据点数
+     */
+    private final long points;
+    /**
+     * 行协议字节数(未压缩)
+     */
+    private final long bytes;
+    /**
+     * 跳过的行数(非法行、无字段的行及被基数保护或写入限流丢弃的行)
+     */
+    private final long skipped;
+    /**
+     * 耗时(毫秒)
+     */
+    private final long elapsedMillis;
+
+    public TransferResult(long points, long bytes, long skipped, long elapsedMillis) {
+        this.points = points;
+        this.bytes = bytes;
+        this.skipped = skipped;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getPoints() {
+        return this.points;
+    }
+
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    public long getSkipped() {
+        return this.skipped;
+    }
+
+    public long getElapsedMillis() {
+        return this.elapsedMillis;
+    }
+
+    /**
+     * 平均速率
+     *
+     * @return points/s
+     */
+    public double getPointsPerSecond() {
+        return rate(points, elapsedMillis);
+    }
+
+    static double rate(long points, long elapsedMillis) {
+        return elapsedMillis <= 0 ? points : points * 1000.0 / elapsedMillis;
+    }
+
+    public String toString() {
+        return "TransferResult(points=" + this.getPoints() + ", bytes=" + this.getBytes() + ", skipped=" + this.getSkipped() + ", elapsedMillis=" + this.getElapsedMillis() + ", pointsPerSecond=" + this.getPointsPerSecond() + ")";
+    }
+}
@@ -0,0 +1,75 @@
+package cn.allbs.influx.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * InfluxQL duration 字面量工具，如 1h、90d、1h30m
+ *
+ * @author ChenQi
+ */
+public final class InfluxDurations {
+
+    /**
+     * 永久保留，对应保留策略的 0s / INF
+     */
+    public static final long INFINITE = Long.MAX_VALUE;
+
+    private static final Pattern PART = Pattern.compile("(\\d+)(ns|ms|u|µ|s|m|h|d|w)");
+
+    private InfluxDurations() {
+    }
+
+    /**
+     * 解析为纳秒
+     *
+     * @param literal duration 字面量
+     * @return 纳秒数，0 或 INF 返回 {@link #INFINITE}
+     * @throws IllegalArgumentException 无法解析时
+     */
+    public static long toNanos(String literal) {
+        if (literal == null || literal.trim().isEmpty()) {
+            throw new IllegalArgumentException("empty duration");
+        }
+        String value = literal.trim();
+        if ("INF".equalsIgnoreCase(value) || "0".equals(value)) {
+            return INFINITE;
+        }
+        Matcher matcher = PART.matcher(value);
+        long nanos = 0;
+        int end = 0;
+        while (matcher.find()) {
+            if (matcher.start() != end) {
+                throw new IllegalArgumentException("invalid duration: " + literal);
+            }
+            nanos += Long.parseLong(matcher.group(1)) * unitNanos(matcher.group(2));
+            end = matcher.end();
+        }
+        if (end != value.length()) {
+            throw new IllegalArgumentException("invalid duration: " + literal);
+        }
+        return nanos == 0 ? INFINITE : nanos;
+    }
+
+    private static long unitNanos(String unit) {
+        switch (unit) {
+            case "ns":
+                return 1L;
+            case "u":
+            case "µ":
+                return 1_000L;
+            case "ms":
+                return 1_000_000L;
+            case "s":
+                return 1_000_000_000L;
+            case "m":
+                return 60_000_000_000L;
+            case "h":
+                return 3_600_000_000_000L;
+            case "d":
+                return 86_400_000_000_000L;
+            default:
+                return 604_800_000_000_000L;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package cn.allbs.influx.util;
+
+/**
+ * InfluxQL 标识符及字符串字面量转义
+ *
+ * @author ChenQi
+ */
+public final class InfluxQl {
+
+    private InfluxQl() {
+    }
+
+    /**
+     * 双引号包裹的标识符，转义反斜杠及双引号，可包含空格、点号等字符
+     *
+     * @param identifier 库名、保留策略名、表名或字段名
+     * @return 如 "cpu load"
+     */
+    public static String identifier(String identifier) {
+        return '"' + identifier.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    /**
+     * 单引号包裹的字符串字面量，转义反斜杠及单引号
+     *
+     * @param value 值
+     * @return 如 'host-1'
+     */
+    public static String string(String value) {
+        return '\'' + value.replace("\\", "\\\\").replace("'", "\\'") + '\'';
+    }
+}
@@ -0,0 +1,292 @@
+package cn.allbs.influx.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 行协议编解码工具
+ * <p>
+ * 一行数据由 series key、field set、时间戳三段组成，以未转义的空格分隔，
+ * field set 中字符串值以双引号包裹，其中的空格不作为分隔符。
+ *
+ * @author ChenQi
+ */
+public final class LineProtocol {
+
+    private LineProtocol() {
+    }
+
+    /**
+     * 写入转义后的表名
+     *
+     * @param sb          目标
+     * @param measurement 表名
+     */
+    public static void appendMeasurement(StringBuilder sb, String measurement) {
+        for (int i = 0; i < measurement.length(); i++) {
+            char c = measurement.charAt(i);
+            if (c == ',' || c == ' ') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+
+    /**
+     * 写入转义后的tag key、tag value或field key
+     *
+     * @param sb  目标
+     * @param key 内容
+     */
+    public static void appendKey(StringBuilder sb, String key) {
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == ',' || c == ' ' || c == '=') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+
+    /**
+     * 按字段类型写入field value
+     *
+     * @param sb    目标
+     * @param value 值
+     * @param type  字段类型 float/integer/string/boolean，为null时按值的java类型推断
+     */
+    public static void appendFieldValue(StringBuilder sb, Object value, String type) {
+        if (type == null) {
+            if (value instanceof Double || value instanceof Float) {
+                type = "float";
+            } else if (value instanceof Number) {
+                type = "integer";
+            } else if (value instanceof Boolean) {
+                type = "boolean";
+            } else {
+                type = "string";
+            }
+        }
+        switch (type) {
+            case "integer":
+                sb.append(((Number) value).longValue()).append('i');
+                break;
+            case "float":
+                sb.append(((Number) value).doubleValue());
+                break;
+            case "boolean":
+                sb.append(value);
+                break;
+            default:
+                sb.append('"');
+                String s = value.toString();
+                for (int i = 0; i < s.length(); i++) {
+                    char c = s.charAt(i);
+                    if (c == '"' || c == '\\') {
+                        sb.append('\\');
+                    }
+                    sb.append(c);
+                }
+                sb.append('"');
+        }
+    }
+
+    /**
+     * 定位三段之间的分隔空格
+     *
+     * @param line 行协议
+     * @return [series key 结束位置, field set 结束位置]，无时间戳时第二个值为行长度，格式不合法时返回null
+     */
+    public static int[] sections(CharSequence line) {
+        int keyEnd = -1;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (keyEnd < 0) {
+                if (c == ' ') {
+                    keyEnd = i;
+                }
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ' ' && !quoted) {
+                return keyEnd == 0 || i == keyEnd + 1 ? null : new int[]{keyEnd, i};
+            }
+        }
+        return keyEnd <= 0 || keyEnd == line.length() - 1 || quoted ? null : new int[]{keyEnd, line.length()};
+    }
+
+    /**
+     * 校验是否为可写入的数据行
+     *
+     * @param line 行协议
+     * @return 是否合法
+     */
+    public static boolean isValid(String line) {
+        int[] sections = sections(line);
+        if (sections == null || line.indexOf('=', sections[0]) < 0) {
+            return false;
+        }
+        for (int i = sections[1] + 1; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if ((c < '0' || c > '9') && !(c == '-' && i == sections[1] + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 生成与 {@link org.influxdb.dto.Point#lineProtocol()} 一致的series key，tag按key排序，忽略空值
+     *
+     * @param measurement 表名
+     * @param tags        tag set
+     * @return series key
+     */
+    public static String seriesKey(String measurement, Map<String, String> tags) {
+        StringBuilder sb = new StringBuilder();
+        appendKey(sb, measurement);
+        if (tags != null) {
+            new TreeMap<>(tags).forEach((k, v) -> {
+                if (v != null && !v.isEmpty()) {
+                    sb.append(',');
+                    appendKey(sb, k);
+                    sb.append('=');
+                    appendKey(sb, v);
+                }
+            });
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解析series key中的表名，去除转义
+     *
+     * @param seriesKey series key
+     * @return 表名
+     */
+    public static String measurement(String seriesKey) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < seriesKey.length(); i++) {
+            char c = seriesKey.charAt(i);
+            if (c == '\\' && i + 1 < seriesKey.length()) {
+                sb.append(seriesKey.charAt(++i));
+            } else if (c == ',') {
+                break;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解析series key中的tag，去除转义
+     *
+     * @param seriesKey series key
+     * @return tag set
+     */
+    public static Map<String, String> tags(String seriesKey) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        StringBuilder key = new StringBuilder();
+        StringBuilder value = new StringBuilder();
+        StringBuilder current = null;
+        for (int i = 0; i < seriesKey.length(); i++) {
+            char c = seriesKey.charAt(i);
+            if (c == '\\' && i + 1 < seriesKey.length()) {
+                if (current != null) {
+                    current.append(seriesKey.charAt(i + 1));
+                }
+                i++;
+            } else if (c == ',') {
+                if (current == value) {
+                    tags.put(key.toString(), value.toString());
+                }
+                key.setLength(0);
+                value.setLength(0);
+                current = key;
+            } else if (c == '=' && current == key) {
+                current = value;
+            } else if (current != null) {
+                current.append(c);
+            }
+        }
+        if (current == value) {
+            tags.put(key.toString(), value.toString());
+        }
+        return tags;
+    }
+
+    /**
+     * 解析field set，整数为Long、浮点数为Double、布尔为Boolean、字符串为String
+     *
+     * @param line  行协议
+     * @param start field set 起始位置
+     * @param end   field set 结束位置
+     * @return field set
+     */
+    public static Map<String, Object> fields(String line, int start, int end) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        StringBuilder key = new StringBuilder();
+        int i = start;
+        while (i < end) {
+            key.setLength(0);
+            while (i < end && line.charAt(i) != '=') {
+                char c = line.charAt(i);
+                if (c == '\\' && i + 1 < end) {
+                    c = line.charAt(++i);
+                }
+                key.append(c);
+                i++;
+            }
+            i++;
+            if (i < end && line.charAt(i) == '"') {
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (i < end && line.charAt(i) != '"') {
+                    char c = line.charAt(i);
+                    if (c == '\\' && i + 1 < end) {
+                        c = line.charAt(++i);
+                    }
+                    value.append(c);
+                    i++;
+                }
+                fields.put(key.toString(), value.toString());
+                i += 2;
+            } else {
+                int valueEnd = i;
+                while (valueEnd < end && line.charAt(valueEnd) != ',') {
+                    valueEnd++;
+                }
+                fields.put(key.toString(), parseValue(line.substring(i, valueEnd)));
+                i = valueEnd + 1;
+            }
+        }
+        return fields;
+    }
+
+    private static Object parseValue(String raw) {
+        char last = raw.charAt(raw.length() - 1);
+        if (last == 'i' || last == 'u') {
+            return Long.parseLong(raw.substring(0, raw.length() - 1));
+        }
+        switch (raw) {
+            case "t":
+            case "T":
+            case "true":
+            case "True":
+            case "TRUE":
+                return Boolean.TRUE;
+            case "f":
+            case "F":
+            case "false":
+            case "False":
+            case "FALSE":
+                return Boolean.FALSE;
+            default:
+                return Double.parseDouble(raw);
+        }
+    }
+}
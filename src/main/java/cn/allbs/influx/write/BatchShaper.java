@@ -0,0 +1,100 @@
+package cn.allbs.influx.write;
+
+import cn.allbs.influx.util.LineProtocol;
+import org.influxdb.dto.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量数据整形
+ * <p>
+ * 按series key分组并在组内按时间戳排序，同一series同一时间戳的数据点合并为一个(字段后写覆盖先写)，
+ * 使服务端按series顺序追加写入缓存，减少排序及重复数据处理。
+ * series key及时间戳取自批次已编码的行协议，未合并的数据点沿用原有的编码结果。
+ *
+ * @author ChenQi
+ */
+public class BatchShaper {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchShaper.class);
+
+    /**
+     * 整形批量数据
+     *
+     * @param batch 已编码的批量数据
+     * @return 整形后的批量数据
+     */
+    public EncodedBatch shape(EncodedBatch batch) {
+        List<EncodedBatch.Entry> entries = batch.getEntries();
+        if (entries.size() < 2) {
+            return batch;
+        }
+        Map<String, List<Entry>> seriesMap = new HashMap<>();
+        List<EncodedBatch.Entry> untimed = new ArrayList<>();
+        for (EncodedBatch.Entry entry : entries) {
+            if (!entry.hasTime()) {
+                untimed.add(entry);
+                continue;
+            }
+            seriesMap.computeIfAbsent(entry.getSeriesKey(), k -> new ArrayList<>()).add(new Entry(entry, entry.getTime()));
+        }
+        List<String> keys = new ArrayList<>(seriesMap.keySet());
+        keys.sort(Comparator.naturalOrder());
+        List<EncodedBatch.Entry> shaped = new ArrayList<>(entries.size());
+        int merged = 0;
+        for (String key : keys) {
+            List<Entry> series = seriesMap.get(key);
+            series.sort(Comparator.comparingLong(e -> e.time));
+            int i = 0;
+            while (i < series.size()) {
+                int j = i + 1;
+                while (j < series.size() && series.get(j).time == series.get(i).time) {
+                    j++;
+                }
+                if (j - i == 1) {
+                    shaped.add(series.get(i).entry);
+                } else {
+                    shaped.add(batch.entry(merge(key, series.subList(i, j), batch.getPrecision())));
+                    merged += j - i - 1;
+                }
+                i = j;
+            }
+        }
+        shaped.addAll(untimed);
+        if (merged > 0) {
+            log.debug("allbs-influx notice: {} duplicate points merged while shaping batch of {} points.", merged, entries.size());
+        }
+        return batch.with(shaped);
+    }
+
+    private static Point merge(String key, List<Entry> duplicates, TimeUnit precision) {
+        Map<String, Object> fields = new HashMap<>();
+        for (Entry duplicate : duplicates) {
+            fields.putAll(duplicate.entry.getFields());
+        }
+        return Point.measurement(LineProtocol.measurement(key))
+                .tag(LineProtocol.tags(key))
+                .fields(fields)
+                .time(duplicates.get(0).time, precision)
+                .build();
+    }
+
+    private static final class Entry {
+
+        private final EncodedBatch.Entry entry;
+
+        private final long time;
+
+        private Entry(EncodedBatch.Entry entry, long time) {
+            this.entry = entry;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package cn.allbs.influx.write;
+
+import cn.allbs.influx.exception.InfluxdbException;
+import cn.allbs.influx.util.LineProtocol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个series的列式数据，一个时间戳数组加若干同长度的基本类型字段数组
+ * <p>
+ * 直接编码为行协议文本: series key 及字段名只转义一次，数值写入复用的 StringBuilder，按字节数切分批次，
+ * 不为每个采样创建 Map 或 Point。double 字段中的 NaN 及无穷大会被跳过，一个采样的所有字段都被跳过时该采样不写入。
+ *
+ * @author ChenQi
+ */
+public class ColumnarPoints {
+
+    private static final byte DOUBLE = 0;
+
+    private static final byte LONG = 1;
+
+    private static final byte BOOLEAN = 2;
+
+    private final String measurement;
+
+    private final Map<String, String> tags;
+
+    private final long[] times;
+
+    private final TimeUnit timeUnit;
+
+    private final List<String> names = new ArrayList<>();
+
+    private final List<Object> columns = new ArrayList<>();
+
+    private final List<Byte> types = new ArrayList<>();
+
+    private ColumnarPoints(String measurement, Map<String, String> tags, long[] times, TimeUnit timeUnit) {
+        this.measurement = measurement;
+        this.tags = tags;
+        this.times = times;
+        this.timeUnit = timeUnit;
+    }
+
+    /**
+     * @param measurement 表名
+     * @param tags        tag set，可为null
+     * @param times       时间戳
+     * @param timeUnit    时间戳的单位，不支持DAYS
+     * @return 列式数据
+     */
+    public static ColumnarPoints of(String measurement, Map<String, String> tags, long[] times, TimeUnit timeUnit) {
+        if (timeUnit == TimeUnit.DAYS) {
+            throw new InfluxdbException("InfluxDB does not support time precision " + timeUnit);
+        }
+        return new ColumnarPoints(measurement, tags, times, timeUnit);
+    }
+
+    /**
+     * 添加浮点字段
+     *
+     * @param name   字段名
+     * @param values 与时间戳同长度的值
+     * @return this
+     */
+    public ColumnarPoints field(String name, double[] values) {
+        return add(name, values, values.length, DOUBLE);
+    }
+
+    /**
+     * 添加整数字段
+     *
+     * @param name   字段名
+     * @param values 与时间戳同长度的值
+     * @return this
+     */
+    public ColumnarPoints field(String name, long[] values) {
+        return add(name, values, values.length, LONG);
+    }
+
+    /**
+     * 添加布尔字段
+     *
+     * @param name   字段名
+     * @param values 与时间戳同长度的值
+     * @return this
+     */
+    public ColumnarPoints field(String name, boolean[] values) {
+        return add(name, values, values.length, BOOLEAN);
+    }
+
+    private ColumnarPoints add(String name, Object values, int length, byte type) {
+        if (length != times.length) {
+            throw new InfluxdbException("Field [" + name + "] has " + length + " values but there are " + times.length + " timestamps");
+        }
+        names.add(name);
+        columns.add(values);
+        types.add(type);
+        return this;
+    }
+
+    /**
+     * 替换tag set，共享时间戳及字段数组
+     *
+     * @param tags tag set
+     * @return 新的列式数据
+     */
+    public ColumnarPoints withTags(Map<String, String> tags) {
+        ColumnarPoints copy = new ColumnarPoints(measurement, tags, times, timeUnit);
+        copy.names.addAll(names);
+        copy.columns.addAll(columns);
+        copy.types.addAll(types);
+        return copy;
+    }
+
+    public String getMeasurement() {
+        return this.measurement;
+    }
+
+    public Map<String, String> getTags() {
+        return this.tags;
+    }
+
+    public long[] getTimes() {
+        return this.times;
+    }
+
+    public TimeUnit getTimeUnit() {
+        return this.timeUnit;
+    }
+
+    /**
+     * 采样数
+     *
+     * @return 时间戳个数
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * 第index个采样的字段值，用于最新值内存索引等少量读取
+     *
+     * @param index 下标
+     * @return 字段名到值，跳过NaN及无穷大
+     */
+    public Map<String, Object> fields(int index) {
+        Map<String, Object> fields = new TreeMap<>();
+        for (int f = 0; f < names.size(); f++) {
+            Object column = columns.get(f);
+            switch (types.get(f)) {
+                case DOUBLE:
+                    double value = ((double[]) column)[index];
+                    if (Double.isFinite(value)) {
+                        fields.put(names.get(f), value);
+                    }
+                    break;
+                case LONG:
+                    fields.put(names.get(f), ((long[]) column)[index]);
+                    break;
+                default:
+                    fields.put(names.get(f), ((boolean[]) column)[index]);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * 编码为行协议批次
+     *
+     * @param batchChars 每批次字符数上限(行协议多为ASCII，近似字节数)
+     * @param sink       接收每批次的行协议文本及其中的采样数
+     * @return 编码的采样数
+     */
+    public long encode(int batchChars, BatchSink sink) {
+        if (names.isEmpty()) {
+            throw new InfluxdbException("ColumnarPoints of measurement [" + measurement + "] has no field");
+        }
+        StringBuilder prefix = new StringBuilder();
+        LineProtocol.appendMeasurement(prefix, measurement);
+        if (tags != null) {
+            new TreeMap<>(tags).forEach((k, v) -> {
+                if (v != null && !v.isEmpty()) {
+                    prefix.append(',');
+                    LineProtocol.appendKey(prefix, k);
+                    prefix.append('=');
+                    LineProtocol.appendKey(prefix, v);
+                }
+            });
+        }
+        String seriesKey = prefix.toString();
+        int fieldCount = names.size();
+        String[] keys = new String[fieldCount];
+        Object[] values = columns.toArray();
+        byte[] kinds = new byte[fieldCount];
+        for (int f = 0; f < fieldCount; f++) {
+            StringBuilder key = new StringBuilder();
+            LineProtocol.appendKey(key, names.get(f));
+            keys[f] = key.append('=').toString();
+            kinds[f] = types.get(f);
+        }
+        StringBuilder sb = new StringBuilder(Math.min(batchChars, 1 << 20) + 256);
+        long encoded = 0;
+        int pending = 0;
+        for (int i = 0; i < times.length; i++) {
+            int mark = sb.length();
+            sb.append(seriesKey);
+            char separator = ' ';
+            for (int f = 0; f < fieldCount; f++) {
+                Object column = values[f];
+                if (kinds[f] == DOUBLE) {
+                    double value = ((double[]) column)[i];
+                    if (!Double.isFinite(value)) {
+                        continue;
+                    }
+                    sb.append(separator).append(keys[f]).append(value);
+                } else if (kinds[f] == LONG) {
+                    sb.append(separator).append(keys[f]).append(((long[]) column)[i]).append('i');
+                } else {
+                    sb.append(separator).append(keys[f]).append(((boolean[]) column)[i]);
+                }
+                separator = ',';
+            }
+            if (separator == ' ') {
+                sb.setLength(mark);
+                continue;
+            }
+            sb.append(' ').append(times[i]).append('\n');
+            encoded++;
+            if (sb.length() > batchChars && mark > 0) {
+                sink.accept(sb.substring(0, mark - 1), pending);
+                sb.delete(0, mark);
+                pending = 0;
+            }
+            pending++;
+        }
+        if (pending > 0) {
+            sink.accept(sb.substring(0, sb.length() - 1), pending);
+        }
+        return encoded;
+    }
+
+    /**
+     * 行协议批次接收方
+     */
+    @FunctionalInterface
+    public interface BatchSink {
+
+        /**
+         * @param records 以换行分隔的行协议
+         * @param points  采样数
+         */
+        void accept(String records, int points);
+    }
+}
@@ -0,0 +1,212 @@
+package cn.allbs.influx.write;
+
+import cn.allbs.influx.util.LineProtocol;
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已编码为行协议的批量数据
+ * <p>
+ * 每个数据点按批次时间精度编码一次，基数保护、速率限制、整形、失败恢复及最新值索引共用同一份行协议及series key，
+ * 写入时直接发送行协议，不再重复格式化数据点。批次仅由单个线程处理，series key等按需解析后缓存。
+ *
+ * @author ChenQi
+ */
+public final class EncodedBatch {
+
+    private final String database;
+
+    private final String retentionPolicy;
+
+    private final InfluxDB.ConsistencyLevel consistency;
+
+    private final TimeUnit precision;
+
+    private final List<Entry> entries;
+
+    private EncodedBatch(String database, String retentionPolicy, InfluxDB.ConsistencyLevel consistency, TimeUnit precision, List<Entry> entries) {
+        this.database = database;
+        this.retentionPolicy = retentionPolicy;
+        this.consistency = consistency;
+        this.precision = precision;
+        this.entries = entries;
+    }
+
+    /**
+     * 编码批量数据
+     *
+     * @param batchPoints 批量数据
+     * @return {@link EncodedBatch}
+     */
+    public static EncodedBatch encode(BatchPoints batchPoints) {
+        TimeUnit precision = batchPoints.getPrecision();
+        List<Point> points = batchPoints.getPoints();
+        List<Entry> entries = new ArrayList<>(points.size());
+        for (Point point : points) {
+            entries.add(new Entry(point, point.lineProtocol(precision)));
+        }
+        return new EncodedBatch(batchPoints.getDatabase(), batchPoints.getRetentionPolicy(), batchPoints.getConsistency(), precision, entries);
+    }
+
+    /**
+     * 以相同的库、保留策略、一致性级别及时间精度创建新批次
+     *
+     * @param entries 数据
+     * @return {@link EncodedBatch}
+     */
+    public EncodedBatch with(List<Entry> entries) {
+        return new EncodedBatch(database, retentionPolicy, consistency, precision, entries);
+    }
+
+    /**
+     * 编码单个数据点，时间戳使用当前批次的精度
+     *
+     * @param point 数据点
+     * @return {@link Entry}
+     */
+    public Entry entry(Point point) {
+        return new Entry(point, point.lineProtocol(precision));
+    }
+
+    /**
+     * 发送行协议
+     *
+     * @param influxdb 连接
+     */
+    public void write(InfluxDB influxdb) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<String> lines = new ArrayList<>(entries.size());
+        entries.forEach(entry -> lines.add(entry.line));
+        influxdb.write(database, retentionPolicy, consistency, precision, lines);
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public String getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    public InfluxDB.ConsistencyLevel getConsistency() {
+        return consistency;
+    }
+
+    public TimeUnit getPrecision() {
+        return precision;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "EncodedBatch(database=" + database + ", retentionPolicy=" + retentionPolicy + ", consistency=" + consistency
+                + ", precision=" + precision + ", points=" + entries.size() + ")";
+    }
+
+    /**
+     * 单个数据点及其行协议
+     */
+    public static final class Entry {
+
+        private final Point point;
+
+        private final String line;
+
+        private final int keyEnd;
+
+        private final int fieldsEnd;
+
+        private String seriesKey;
+
+        private String measurement;
+
+        private Entry(Point point, String line) {
+            this.point = point;
+            this.line = line;
+            int[] sections = LineProtocol.sections(line);
+            this.keyEnd = sections == null ? -1 : sections[0];
+            this.fieldsEnd = sections == null ? -1 : sections[1];
+        }
+
+        public Point getPoint() {
+            return point;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        /**
+         * 是否为可解析的行协议
+         */
+        public boolean isValid() {
+            return keyEnd > 0;
+        }
+
+        /**
+         * @return series key，行协议不可解析时返回null
+         */
+        public String getSeriesKey() {
+            if (seriesKey == null && isValid()) {
+                seriesKey = line.substring(0, keyEnd);
+            }
+            return seriesKey;
+        }
+
+        /**
+         * @return 表名，行协议不可解析时返回整行解析出的表名
+         */
+        public String getMeasurement() {
+            if (measurement == null) {
+                measurement = LineProtocol.measurement(isValid() ? getSeriesKey() : line);
+            }
+            return measurement;
+        }
+
+        /**
+         * 是否带时间戳，未指定时间戳的数据点由服务端赋值
+         */
+        public boolean hasTime() {
+            return isValid() && fieldsEnd < line.length();
+        }
+
+        /**
+         * @return 批次精度下的时间戳
+         */
+        public long getTime() {
+            return Long.parseLong(line.substring(fieldsEnd + 1));
+        }
+
+        public Map<String, Object> getFields() {
+            return LineProtocol.fields(line, keyEnd + 1, fieldsEnd);
+        }
+
+        /**
+         * @return 行协议字节数，含换行符
+         */
+        public long bytes() {
+            return line.length() + 1L;
+        }
+
+        @Override
+        public String toString() {
+            return line;
+        }
+    }
+}
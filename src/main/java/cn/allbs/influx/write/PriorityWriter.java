@@ -0,0 +1,256 @@
+package cn.allbs.influx.write;
+
+import cn.allbs.influx.InfluxDbProperties;
+import cn.allbs.influx.exception.InfluxdbException;
+import cn.allbs.influx.util.NamedThreadFactory;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 分优先级写入
+ * <p>
+ * 每个优先级一个有界队列、一个组批线程及独立的写入线程池，写入线程数即该优先级的HTTP并发上限。
+ * 组批线程在队首数据点等待达到 flushInterval 或批次达到 maxBatch 时发送，因此 flushInterval 即该优先级的排队延迟上限。
+ * 配置了 yieldTimeout 的优先级在更高优先级有排队或在途写入时最多等待该时长再发送，让出HTTP连接及服务端写入能力。
+ *
+ * @author ChenQi
+ */
+public class PriorityWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(PriorityWriter.class);
+
+    private static final long YIELD_STEP_MILLIS = 2;
+
+    private final Map<WritePriority, Lane> lanes = new EnumMap<>(WritePriority.class);
+
+    private final Consumer<BatchPoints> writer;
+
+    private volatile boolean running = true;
+
+    public PriorityWriter(String name, InfluxDbProperties.Priority priority, Consumer<BatchPoints> writer) {
+        this.writer = writer;
+        lanes.put(WritePriority.HIGH, new Lane(name, WritePriority.HIGH, priority.getHigh()));
+        lanes.put(WritePriority.NORMAL, new Lane(name, WritePriority.NORMAL, priority.getNormal()));
+        lanes.put(WritePriority.LOW, new Lane(name, WritePriority.LOW, priority.getLow()));
+        lanes.values().forEach(Lane::start);
+    }
+
+    /**
+     * 数据点入队
+     *
+     * @param priority        优先级
+     * @param database        库名
+     * @param retentionPolicy 保留策略
+     * @param point           数据点
+     */
+    public void write(WritePriority priority, String database, String retentionPolicy, Point point) {
+        if (!running) {
+            throw new InfluxdbException("InfluxDB priority writer is closed");
+        }
+        lanes.get(priority).offer(new Entry(database, retentionPolicy, point));
+    }
+
+    /**
+     * 队列中等待发送的数据点数
+     *
+     * @param priority 优先级
+     * @return 数据点数
+     */
+    public int getQueued(WritePriority priority) {
+        return lanes.get(priority).queue.size();
+    }
+
+    /**
+     * 已写入的数据点数
+     *
+     * @param priority 优先级
+     * @return 数据点数
+     */
+    public long getWritten(WritePriority priority) {
+        return lanes.get(priority).written.sum();
+    }
+
+    /**
+     * 写入失败的数据点数
+     *
+     * @param priority 优先级
+     * @return 数据点数
+     */
+    public long getFailed(WritePriority priority) {
+        return lanes.get(priority).failed.sum();
+    }
+
+    /**
+     * 停止接收新数据点，发送队列中剩余数据后关闭线程
+     */
+    public void close() {
+        running = false;
+        for (Lane lane : lanes.values()) {
+            lane.stop();
+        }
+    }
+
+    private boolean busyAbove(WritePriority priority) {
+        for (Lane lane : lanes.values()) {
+            if (lane.priority.ordinal() < priority.ordinal() && (!lane.queue.isEmpty() || lane.inFlight.get() > 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class Lane implements Runnable {
+
+        private final WritePriority priority;
+
+        private final InfluxDbProperties.Lane config;
+
+        private final BlockingQueue<Entry> queue;
+
+        private final Semaphore permits;
+
+        private final ExecutorService senders;
+
+        private final Thread flusher;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final LongAdder written = new LongAdder();
+
+        private final LongAdder failed = new LongAdder();
+
+        private Lane(String name, WritePriority priority, InfluxDbProperties.Lane config) {
+            String prefix = "allbs-influx-" + name + "-" + priority.name().toLowerCase();
+            this.priority = priority;
+            this.config = config;
+            this.queue = new ArrayBlockingQueue<>(config.getCapacity());
+            this.permits = new Semaphore(config.getConcurrency());
+            this.senders = Executors.newFixedThreadPool(config.getConcurrency(), new NamedThreadFactory(prefix + "-sender"));
+            this.flusher = new NamedThreadFactory(prefix + "-flusher").newThread(this);
+        }
+
+        private void start() {
+            flusher.start();
+        }
+
+        private void offer(Entry entry) {
+            boolean accepted;
+            try {
+                accepted = queue.offer(entry, config.getEnqueueTimeout(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+            if (!accepted) {
+                failed.increment();
+                throw new InfluxdbException("InfluxDB " + priority + " write queue is full");
+            }
+        }
+
+        @Override
+        public void run() {
+            long flushNanos = TimeUnit.MILLISECONDS.toNanos(config.getFlushInterval());
+            while (running || !queue.isEmpty()) {
+                try {
+                    Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    List<Entry> batch = new ArrayList<>(Math.min(config.getMaxBatch(), queue.size() + 1));
+                    batch.add(first);
+                    long deadline = first.enqueuedAt + flushNanos;
+                    while (batch.size() < config.getMaxBatch()) {
+                        long wait = deadline - System.nanoTime();
+                        Entry next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    yieldToHigherPriority();
+                    permits.acquire();
+                    inFlight.incrementAndGet();
+                    senders.execute(() -> send(batch));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void yieldToHigherPriority() throws InterruptedException {
+            long until = System.currentTimeMillis() + config.getYieldTimeout();
+            while (running && System.currentTimeMillis() < until && busyAbove(priority)) {
+                Thread.sleep(YIELD_STEP_MILLIS);
+            }
+        }
+
+        private void send(List<Entry> batch) {
+            try {
+                Map<String, BatchPoints> targets = new LinkedHashMap<>();
+                for (Entry entry : batch) {
+                    targets.computeIfAbsent(entry.database + '\u0000' + entry.retentionPolicy,
+                            k -> BatchPoints.database(entry.database).retentionPolicy(entry.retentionPolicy).build())
+                            .point(entry.point);
+                }
+                for (BatchPoints batchPoints : targets.values()) {
+                    try {
+                        writer.accept(batchPoints);
+                        written.add(batchPoints.getPoints().size());
+                    } catch (Exception e) {
+                        failed.add(batchPoints.getPoints().size());
+                        log.error("allbs-influx warning! InfluxDB {} batch insertion failed due to: {}", priority, e.getLocalizedMessage());
+                    }
+                }
+            } finally {
+                inFlight.decrementAndGet();
+                permits.release();
+            }
+        }
+
+        private void stop() {
+            try {
+                flusher.join();
+                senders.shutdown();
+                senders.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                senders.shutdownNow();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final String database;
+
+        private final String retentionPolicy;
+
+        private final Point point;
+
+        private final long enqueuedAt = System.nanoTime();
+
+        private Entry(String database, String retentionPolicy, Point point) {
+            this.database = database;
+            this.retentionPolicy = retentionPolicy;
+            this.point = point;
+        }
+    }
+}
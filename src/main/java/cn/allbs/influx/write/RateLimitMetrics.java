@@ -0,0 +1,49 @@
+package cn.allbs.influx.write;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 写入速率限制的统计指标
+ *
+ * @author ChenQi
+ */
+public class RateLimitMetrics {
+
+    /**
+     * 因超出限制被等待的写入次数
+     */
+    private final LongAdder throttledWrites = new LongAdder();
+    /**
+     * 累计等待时间(纳秒)
+     */
+    private final LongAdder throttledNanos = new LongAdder();
+    /**
+     * 因超出限制被丢弃的数据点数
+     */
+    private final LongAdder droppedPoints = new LongAdder();
+
+    void throttled(long nanos) {
+        throttledWrites.increment();
+        throttledNanos.add(nanos);
+    }
+
+    void dropped(int points) {
+        droppedPoints.add(points);
+    }
+
+    public long getThrottledWrites() {
+        return throttledWrites.sum();
+    }
+
+    public long getThrottledMillis() {
+        return throttledNanos.sum() / 1_000_000;
+    }
+
+    public long getDroppedPoints() {
+        return droppedPoints.sum();
+    }
+
+    public String toString() {
+        return "RateLimitMetrics(throttledWrites=" + this.getThrottledWrites() + ", throttledMillis=" + this.getThrottledMillis() + ", droppedPoints=" + this.getDroppedPoints() + ")";
+    }
+}
@@ -0,0 +1,24 @@
+package cn.allbs.influx.write;
+
+/**
+ * 超出写入速率限制时的处理方式
+ *
+ * @author ChenQi
+ */
+public enum RateLimitMode {
+
+    /**
+     * 阻塞写入线程直至令牌足够
+     */
+    BLOCK,
+
+    /**
+     * 最多等待 max-delay，仍不足时丢弃并计数
+     */
+    DELAY,
+
+    /**
+     * 立即丢弃并计数
+     */
+    DROP
+}
@@ -0,0 +1,58 @@
+package cn.allbs.influx.write;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶
+ * <p>
+ * 以GCRA方式实现: 只记录桶被消耗至的理论时间点，取令牌为一次CAS，空闲时间最多累积 burst 秒的令牌。
+ * 预占的令牌可以超出当前余量，返回值为调用方需等待的时长，从而阻塞时不会被后来者插队。
+ *
+ * @author ChenQi
+ */
+final class TokenBucket {
+
+    private final double nanosPerPermit;
+
+    private final long burstNanos;
+
+    private final AtomicLong theoreticalTime;
+
+    TokenBucket(long permitsPerSecond, double burst) {
+        this.nanosPerPermit = 1e9 / permitsPerSecond;
+        this.burstNanos = (long) (burst * 1e9);
+        this.theoreticalTime = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 预占令牌
+     *
+     * @param permits      令牌数
+     * @param maxWaitNanos 可接受的最长等待时间
+     * @return 需等待的纳秒数，超出可接受等待时间时不预占并返回-1
+     */
+    long reserve(long permits, long maxWaitNanos) {
+        long cost = (long) (permits * nanosPerPermit);
+        for (; ; ) {
+            long now = System.nanoTime();
+            long current = theoreticalTime.get();
+            long next = Math.max(current, now) + cost;
+            long wait = next - now - burstNanos;
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (theoreticalTime.compareAndSet(current, next)) {
+                return Math.max(wait, 0);
+            }
+        }
+    }
+
+    /**
+     * 归还已预占的令牌
+     *
+     * @param permits 令牌数
+     */
+    void refund(long permits) {
+        theoreticalTime.addAndGet(-(long) (permits * nanosPerPermit));
+    }
+}
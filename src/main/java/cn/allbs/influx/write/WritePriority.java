@@ -0,0 +1,24 @@
+package cn.allbs.influx.write;
+
+/**
+ * 写入优先级，每个优先级拥有独立的队列、写入线程及HTTP并发数
+ *
+ * @author ChenQi
+ */
+public enum WritePriority {
+
+    /**
+     * 高优先级，如告警事件，小批次、短间隔写入
+     */
+    HIGH,
+
+    /**
+     * 普通优先级
+     */
+    NORMAL,
+
+    /**
+     * 低优先级，如批量补数，较高优先级繁忙时让出
+     */
+    LOW
+}
@@ -0,0 +1,289 @@
+package cn.allbs.influx.write;
+
+import cn.allbs.influx.InfluxDbProperties;
+import cn.allbs.influx.exception.InfluxdbException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写入速率限制
+ * <p>
+ * 按表、库、全局三级令牌桶分别限制每秒数据点数及字节数，字节数按行协议长度计算。
+ * 一个批次先按表预占，超限的表的数据点单独丢弃，其余数据点再依次预占库及全局额度，超限时整批丢弃并归还已预占的额度。
+ * 令牌桶为单次CAS的无锁实现，表级令牌桶创建后读取不加锁。
+ *
+ * @author ChenQi
+ */
+public class WriteRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteRateLimiter.class);
+
+    private final RateLimitMode mode;
+
+    private final long maxDelayNanos;
+
+    private final Quota global;
+
+    private final Map<String, Quota> databases = new HashMap<>();
+
+    private final ConcurrentMap<String, Quota> measurements = new ConcurrentHashMap<>();
+
+    private final InfluxDbProperties.Limit measurementDefault;
+
+    private final boolean perMeasurement;
+
+    private final boolean countBytes;
+
+    private final RateLimitMetrics metrics = new RateLimitMetrics();
+
+    public WriteRateLimiter(InfluxDbProperties.RateLimit rateLimit) {
+        this.mode = rateLimit.getMode();
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(rateLimit.getMaxDelay());
+        this.global = Quota.of(rateLimit.getGlobal());
+        rateLimit.getDatabases().forEach((k, v) -> {
+            Quota quota = Quota.of(v);
+            if (quota != null) {
+                databases.put(k, quota);
+            }
+        });
+        rateLimit.getMeasurements().forEach((k, v) -> {
+            Quota quota = Quota.of(v);
+            measurements.put(k, quota == null ? Quota.UNLIMITED : quota);
+        });
+        this.measurementDefault = rateLimit.getMeasurementDefault();
+        this.perMeasurement = !measurements.isEmpty() || measurementDefault.isLimited();
+        boolean bytes = rateLimit.getGlobal().getBytesPerSecond() > 0 || measurementDefault.getBytesPerSecond() > 0;
+        for (InfluxDbProperties.Limit limit : rateLimit.getDatabases().values()) {
+            bytes |= limit.getBytesPerSecond() > 0;
+        }
+        for (InfluxDbProperties.Limit limit : rateLimit.getMeasurements().values()) {
+            bytes |= limit.getBytesPerSecond() > 0;
+        }
+        this.countBytes = bytes;
+    }
+
+    /**
+     * 按限制处理批次，必要时阻塞当前线程
+     *
+     * @param batch    已编码的批量数据
+     * @param database 批次未指定库时的默认库
+     * @return 允许写入的数据，全部丢弃时返回null
+     */
+    public EncodedBatch acquire(EncodedBatch batch, String database) {
+        List<EncodedBatch.Entry> points = batch.getEntries();
+        if (points.isEmpty()) {
+            return batch;
+        }
+        long maxWait = maxWait();
+        List<Object[]> reserved = new ArrayList<>(4);
+        List<EncodedBatch.Entry> allowed = points;
+        long bytes = 0;
+        long wait = 0;
+        if (perMeasurement || countBytes) {
+            Map<String, long[]> usage = perMeasurement ? new HashMap<>() : null;
+            for (EncodedBatch.Entry point : points) {
+                long size = point.bytes();
+                bytes += size;
+                if (perMeasurement) {
+                    long[] used = usage.computeIfAbsent(point.getMeasurement(), k -> new long[2]);
+                    used[0]++;
+                    used[1] += size;
+                }
+            }
+            if (perMeasurement) {
+                Set<String> rejected = null;
+                for (Map.Entry<String, long[]> entry : usage.entrySet()) {
+                    Quota quota = measurementQuota(entry.getKey());
+                    long[] used = entry.getValue();
+                    long w = quota.reserve(used[0], used[1], maxWait);
+                    if (w < 0) {
+                        if (rejected == null) {
+                            rejected = new HashSet<>();
+                        }
+                        rejected.add(entry.getKey());
+                        bytes -= used[1];
+                    } else {
+                        reserved.add(new Object[]{quota, used[0], used[1]});
+                        wait = Math.max(wait, w);
+                    }
+                }
+                if (rejected != null) {
+                    allowed = new ArrayList<>(points.size());
+                    for (EncodedBatch.Entry point : points) {
+                        if (!rejected.contains(point.getMeasurement())) {
+                            allowed.add(point);
+                        }
+                    }
+                    metrics.dropped(points.size() - allowed.size());
+                    log.warn("allbs-influx warning! write rate limit exceeded for measurements {}, {} points dropped", rejected, points.size() - allowed.size());
+                    if (allowed.isEmpty()) {
+                        return null;
+                    }
+                }
+            }
+        }
+        String db = batch.getDatabase() == null ? database : batch.getDatabase();
+        long w = reserve(databases.get(db), global, allowed.size(), bytes, maxWait, reserved);
+        if (w < 0) {
+            metrics.dropped(allowed.size());
+            log.warn("allbs-influx warning! write rate limit exceeded for database [{}], {} points dropped", db, allowed.size());
+            return null;
+        }
+        await(Math.max(wait, w));
+        return allowed == points ? batch : batch.with(allowed);
+    }
+
+    /**
+     * 按限制预占已编码批次的额度，必要时阻塞当前线程
+     *
+     * @param database    库名
+     * @param measurement 表名
+     * @param points      数据点数
+     * @param bytes       行协议字节数
+     * @return 是否允许写入，被丢弃时返回false
+     */
+    public boolean acquire(String database, String measurement, int points, long bytes) {
+        long maxWait = maxWait();
+        List<Object[]> reserved = new ArrayList<>(3);
+        long wait = 0;
+        if (perMeasurement) {
+            Quota quota = measurementQuota(measurement);
+            wait = quota.reserve(points, bytes, maxWait);
+            if (wait < 0) {
+                metrics.dropped(points);
+                log.warn("allbs-influx warning! write rate limit exceeded for measurement [{}], {} points dropped", measurement, points);
+                return false;
+            }
+            reserved.add(new Object[]{quota, (long) points, bytes});
+        }
+        long w = reserve(databases.get(database), global, points, bytes, maxWait, reserved);
+        if (w < 0) {
+            metrics.dropped(points);
+            log.warn("allbs-influx warning! write rate limit exceeded for database [{}], {} points dropped", database, points);
+            return false;
+        }
+        await(Math.max(wait, w));
+        return true;
+    }
+
+    /**
+     * 统计指标
+     *
+     * @return {@link RateLimitMetrics}
+     */
+    public RateLimitMetrics getMetrics() {
+        return metrics;
+    }
+
+    private long maxWait() {
+        return mode == RateLimitMode.BLOCK ? Long.MAX_VALUE : mode == RateLimitMode.DELAY ? maxDelayNanos : 0;
+    }
+
+    /**
+     * 依次预占库及全局额度，失败时归还包括表级在内的所有已预占额度
+     */
+    private static long reserve(Quota database, Quota global, long points, long bytes, long maxWait, List<Object[]> reserved) {
+        long wait = 0;
+        for (Quota quota : new Quota[]{database, global}) {
+            if (quota == null) {
+                continue;
+            }
+            long w = quota.reserve(points, bytes, maxWait);
+            if (w < 0) {
+                for (Object[] r : reserved) {
+                    ((Quota) r[0]).refund((Long) r[1], (Long) r[2]);
+                }
+                return -1;
+            }
+            reserved.add(new Object[]{quota, points, bytes});
+            wait = Math.max(wait, w);
+        }
+        return wait;
+    }
+
+    private void await(long wait) {
+        if (wait <= 0) {
+            return;
+        }
+        metrics.throttled(wait);
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InfluxdbException("InfluxDB write interrupted while waiting for rate limit");
+        }
+    }
+
+    private Quota measurementQuota(String measurement) {
+        Quota quota = measurements.get(measurement);
+        if (quota == null) {
+            quota = measurements.computeIfAbsent(measurement, k -> measurementDefault.isLimited() ? Quota.of(measurementDefault) : Quota.UNLIMITED);
+        }
+        return quota;
+    }
+
+    /**
+     * 一个限制对象的数据点数及字节数令牌桶
+     */
+    private static final class Quota {
+
+        private static final Quota UNLIMITED = new Quota(null, null);
+
+        private final TokenBucket points;
+
+        private final TokenBucket bytes;
+
+        private Quota(TokenBucket points, TokenBucket bytes) {
+            this.points = points;
+            this.bytes = bytes;
+        }
+
+        private static Quota of(InfluxDbProperties.Limit limit) {
+            if (!limit.isLimited()) {
+                return null;
+            }
+            return new Quota(limit.getPointsPerSecond() > 0 ? new TokenBucket(limit.getPointsPerSecond(), limit.getBurst()) : null,
+                    limit.getBytesPerSecond() > 0 ? new TokenBucket(limit.getBytesPerSecond(), limit.getBurst()) : null);
+        }
+
+        private long reserve(long pointCount, long byteCount, long maxWait) {
+            long wait = 0;
+            if (points != null) {
+                wait = points.reserve(pointCount, maxWait);
+                if (wait < 0) {
+                    return -1;
+                }
+            }
+            if (bytes != null) {
+                long w = bytes.reserve(byteCount, maxWait);
+                if (w < 0) {
+                    if (points != null) {
+                        points.refund(pointCount);
+                    }
+                    return -1;
+                }
+                wait = Math.max(wait, w);
+            }
+            return wait;
+        }
+
+        private void refund(long pointCount, long byteCount) {
+            if (points != null) {
+                points.refund(pointCount);
+            }
+            if (bytes != null) {
+                bytes.refund(byteCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package cn.allbs.influx.benchmark;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import okio.Okio;
+import org.influxdb.dto.QueryResult;
+import org.influxdb.msgpack.MessagePackTraverser;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON与MessagePack响应解析耗时对比
+ * <p>
+ * 使用与influxdb-java相同的解析器(JSON为Moshi，MessagePack为 {@link MessagePackTraverser})解析同一结果集，
+ * 输出平均耗时及每次解析的内存分配量。
+ * <pre>
+ * # 生成50万行的结果集
+ * java -cp ... cn.allbs.influx.benchmark.ResponseFormatBenchmark 500000
+ * # 解析录制的响应
+ * curl -G 'http://localhost:8086/query?db=test' --data-urlencode 'q=SELECT * FROM cpu' -o cpu.json
+ * curl -G 'http://localhost:8086/query?db=test' -H 'Accept: application/x-msgpack' --data-urlencode 'q=SELECT * FROM cpu' -o cpu.msgpack
+ * java -cp ... cn.allbs.influx.benchmark.ResponseFormatBenchmark cpu.json cpu.msgpack
+ * </pre>
+ *
+ * @author ChenQi
+ */
+public class ResponseFormatBenchmark {
+
+    private static final int WARMUP = 3;
+
+    private static final int ITERATIONS = 5;
+
+    private static final JsonAdapter<QueryResult> JSON = new Moshi.Builder().build().adapter(QueryResult.class);
+
+    public static void main(String[] args) throws IOException {
+        byte[] json;
+        byte[] msgpack;
+        if (args.length >= 2) {
+            json = Files.readAllBytes(Paths.get(args[0]));
+            msgpack = Files.readAllBytes(Paths.get(args[1]));
+        } else {
+            int rows = args.length == 1 ? Integer.parseInt(args[0]) : 500_000;
+            json = json(rows);
+            msgpack = msgpack(rows);
+        }
+        System.out.printf("JSON %d bytes, MessagePack %d bytes%n", json.length, msgpack.length);
+        run("JSON", json, ResponseFormatBenchmark::decodeJson);
+        run("MessagePack", msgpack, ResponseFormatBenchmark::decodeMsgpack);
+    }
+
+    private static void run(String name, byte[] body, Decoder decoder) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            decoder.decode(new ByteArrayInputStream(body));
+        }
+        long rows = 0;
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            rows = rows(decoder.decode(new ByteArrayInputStream(body)));
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = allocatedBytes() - allocated;
+        System.out.printf("%-12s %d rows, %.1f ms, %.1f MB allocated per decode%n", name, rows,
+                elapsed / 1e6 / ITERATIONS, allocated < 0 ? Double.NaN : allocated / 1024.0 / 1024.0 / ITERATIONS);
+    }
+
+    private static QueryResult decodeJson(InputStream in) throws IOException {
+        return JSON.fromJson(Okio.buffer(Okio.source(in)));
+    }
+
+    private static QueryResult decodeMsgpack(InputStream in) {
+        return new MessagePackTraverser().parse(in);
+    }
+
+    private static long rows(QueryResult result) {
+        long rows = 0;
+        for (QueryResult.Result r : result.getResults()) {
+            if (r.getSeries() != null) {
+                for (QueryResult.Series series : r.getSeries()) {
+                    rows += series.getValues() == null ? 0 : series.getValues().size();
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * 与InfluxDB相同结构的JSON响应，time为RFC3339字符串
+     */
+    private static byte[] json(int rows) {
+        StringBuilder sb = new StringBuilder(rows * 96);
+        sb.append("{\"results\":[{\"statement_id\":0,\"series\":[{\"name\":\"cpu\",\"columns\":[\"time\",\"host\",\"value\",\"count\",\"status\"],\"values\":[");
+        long base = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        for (int i = 0; i < rows; i++) {
+            long nanos = base + i * 1_000_000L;
+            sb.append(i == 0 ? "[\"" : ",[\"").append(Instant.ofEpochSecond(0, nanos)).append("\",\"host-").append(i % 100)
+                    .append("\",").append(i * 0.37).append(',').append(i).append(",\"status-").append(i % 7).append("\"]");
+        }
+        sb.append("]}]}]}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 与InfluxDB相同结构的MessagePack响应，time为扩展类型5(秒+纳秒)
+     */
+    private static byte[] msgpack(int rows) throws IOException {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        packer.packMapHeader(1).packString("results").packArrayHeader(1);
+        packer.packMapHeader(2).packString("statement_id").packInt(0).packString("series").packArrayHeader(1);
+        packer.packMapHeader(3).packString("name").packString("cpu").packString("columns").packArrayHeader(5);
+        packer.packString("time").packString("host").packString("value").packString("count").packString("status");
+        packer.packString("values").packArrayHeader(rows);
+        long base = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        ByteBuffer time = ByteBuffer.allocate(12);
+        for (int i = 0; i < rows; i++) {
+            long nanos = base + i * 1_000_000L;
+            time.clear();
+            time.putLong(TimeUnit.NANOSECONDS.toSeconds(nanos)).putInt((int) (nanos % 1_000_000_000L));
+            packer.packArrayHeader(5).packExtensionTypeHeader((byte) 5, 12).writePayload(time.array());
+            packer.packString("host-" + i % 100).packDouble(i * 0.37).packLong(i).packString("status-" + i % 7);
+        }
+        packer.close();
+        return packer.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Decoder {
+
+        QueryResult decode(InputStream in) throws IOException;
+    }
+}